@@ -0,0 +1,162 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/** Map of owner to accountID, which never changes once the broker has been created, so that trades needn't ask the
+ *  Portfolio microservice for it.  Open addressing (linear probing) over parallel arrays, so each entry costs just
+ *  its two strings plus a few array slots, rather than a HashMap node.  Once full, new owners aren't added.  Can be
+ *  saved to (and loaded from) a snapshot file, so a restarted broker needn't look every owner up again.
+ */
+class AccountIndex {
+	private static final int SNAPSHOT_MAGIC = 0x41434349; //"ACCI"
+	private static final String REMOVED = new String("removed"); //tombstone, compared by identity
+
+	private final int maxSize;
+	private String[] owners;
+	private String[] accountIDs;
+	private int size = 0;      //live entries
+	private int occupied = 0;  //live entries plus tombstones
+
+	AccountIndex(int maxSize) {
+		this.maxSize = Math.max(maxSize, 1);
+		owners = new String[16];
+		accountIDs = new String[16];
+	}
+
+	/** Returns the accountID of this owner, or null if it isn't known */
+	synchronized String get(String owner) {
+		int slot = find(owner);
+		return (slot >= 0) ? accountIDs[slot] : null;
+	}
+
+	synchronized void put(String owner, String accountID) {
+		if ((owner == null) || (accountID == null)) return;
+
+		int slot = find(owner);
+		if (slot >= 0) {
+			accountIDs[slot] = accountID;
+			return;
+		}
+		if (size >= maxSize) return;
+		if ((occupied + 1) * 4 > owners.length * 3) resize(); //keep the load factor under 3/4
+
+		int mask = owners.length - 1;
+		for (slot = hash(owner) & mask; (owners[slot] != null) && (owners[slot] != REMOVED); slot = (slot + 1) & mask);
+		if (owners[slot] == null) occupied++;
+		owners[slot] = owner;
+		accountIDs[slot] = accountID;
+		size++;
+	}
+
+	synchronized void remove(String owner) {
+		int slot = find(owner);
+		if (slot >= 0) {
+			owners[slot] = REMOVED; //leave a tombstone, so later entries in the same probe sequence can still be found
+			accountIDs[slot] = null;
+			size--;
+		}
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	/** The number of slots, live or not */
+	synchronized int capacity() {
+		return owners.length;
+	}
+
+	private int find(String owner) {
+		if (owner == null) return -1;
+		int mask = owners.length - 1;
+		for (int slot = hash(owner) & mask; owners[slot] != null; slot = (slot + 1) & mask) {
+			if ((owners[slot] != REMOVED) && owners[slot].equals(owner)) return slot;
+		}
+		return -1;
+	}
+
+	/** Doubles the capacity if mostly live entries, else just rehashes in place to clear out the tombstones */
+	private void resize() {
+		String[] oldOwners = owners;
+		String[] oldAccountIDs = accountIDs;
+		int capacity = (size * 2 >= oldOwners.length) ? oldOwners.length * 2 : oldOwners.length;
+		owners = new String[capacity];
+		accountIDs = new String[capacity];
+		occupied = size;
+
+		int mask = capacity - 1;
+		for (int index = 0; index < oldOwners.length; index++) {
+			String owner = oldOwners[index];
+			if ((owner == null) || (owner == REMOVED)) continue;
+			int slot = hash(owner) & mask;
+			while (owners[slot] != null) slot = (slot + 1) & mask;
+			owners[slot] = owner;
+			accountIDs[slot] = oldAccountIDs[index];
+		}
+	}
+
+	private static int hash(String owner) {
+		int hash = owner.hashCode();
+		return hash ^ (hash >>> 16); //spread the high bits, since the table is indexed by the low ones
+	}
+
+	/** Writes all the entries to the file, via a temporary file, so a crash can't leave a partial snapshot */
+	void save(Path file) throws IOException {
+		String[] snapshotOwners;
+		String[] snapshotAccountIDs;
+		int count;
+		synchronized (this) {
+			snapshotOwners = owners.clone();
+			snapshotAccountIDs = accountIDs.clone();
+			count = size;
+		}
+
+		Path temp = file.resolveSibling(file.getFileName()+".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(count);
+			for (int index = 0; index < snapshotOwners.length; index++) {
+				String owner = snapshotOwners[index];
+				if ((owner == null) || (owner == REMOVED)) continue;
+				out.writeUTF(owner);
+				out.writeUTF(snapshotAccountIDs[index]);
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Adds the entries from a snapshot written by save, returning how many there were (0 if there's no file) */
+	int load(Path file) throws IOException {
+		if (!Files.exists(file)) return 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not an account index snapshot: "+file);
+			int count = in.readInt();
+			for (int index = 0; index < count; index++) put(in.readUTF(), in.readUTF());
+			return count;
+		}
+	}
+}
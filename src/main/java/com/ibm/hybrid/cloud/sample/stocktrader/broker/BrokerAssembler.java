@@ -0,0 +1,60 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Account;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Builds brokers out of the data fetched from the downstream microservices, with no I/O of its own, so it can be
+ *  benchmarked on its own (see ReconcileBenchmark under src/perf/java).
+ */
+public final class BrokerAssembler {
+	private BrokerAssembler() {
+	}
+
+	/** Matches each portfolio up with its account (if any) in a single pass, probing a map of the accounts keyed
+	 *  by accountID.  The resulting brokers are in the same order as the page of portfolios.
+	 */
+	public static List<Broker> reconcile(List<Portfolio> portfolios, List<Account> accounts) {
+		Map<String, Account> accountsByID = mapAccountsByID(accounts);
+		Broker[] brokers = new Broker[portfolios.size()];
+		int index = 0;
+		for (Portfolio portfolio : portfolios) {
+			brokers[index++] = new Broker(portfolio, accountsByID.get(portfolio.getAccountID()));
+		}
+		return Arrays.asList(brokers);
+	}
+
+	/** Builds a map of the accounts keyed by accountID, presized so it never needs to rehash */
+	static Map<String, Account> mapAccountsByID(List<Account> accounts) {
+		if ((accounts == null) || accounts.isEmpty()) return Collections.emptyMap();
+
+		Map<String, Account> accountsByID = new HashMap<>((int) (accounts.size() / 0.75f) + 1);
+		for (Account account : accounts) {
+			String id = account.getId();
+			if ((id != null) && !id.equals("null")) accountsByID.put(id, account);
+		}
+		return accountsByID;
+	}
+}
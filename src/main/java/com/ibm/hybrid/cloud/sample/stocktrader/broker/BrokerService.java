@@ -26,21 +26,35 @@ import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
 import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.CashAccount;
 import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Feedback;
 import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Trade;
 import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.WatsonInput;
 
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 
 //Logging (JSR 47)
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 //CDI 2.0
 import io.opentelemetry.context.Scope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -50,22 +64,42 @@ import jakarta.enterprise.context.RequestScoped;
 import jakarta.ws.rs.*;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+//mpFaultTolerance 4.0
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceException;
+
 //mpJWT 1.1
 import org.eclipse.microprofile.auth.LoginConfig;
 
+//mpMetrics 5.1
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+
 //mpRestClient 1.3
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 
 //Servlet 4.0
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 //JAX-RS 2.1 (JSR 339)
 import jakarta.ws.rs.core.Application;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.ResponseBuilder;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+
+//JSON-B 3.0
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
 
 //MP OpenTelemetry
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 
@@ -73,15 +107,33 @@ import io.opentelemetry.api.trace.Tracer;
 @Path("/")
 @LoginConfig(authMethod = "MP-JWT", realmName = "jwt-jaspi")
 @ApplicationScoped //enable interceptors like @Transactional (note you need a WEB-INF/beans.xml in your war)
+@EndpointMetrics //in-flight request gauge per endpoint
 /** This microservice is the controller in a model-view-controller architecture, doing the routing and
  *  combination of results from other microservices.  Note that the Portfolio microservice it calls is
  *  mandatory, whereas the Account and TradeHistory microservices are optional.
  */
 public class BrokerService extends Application {
 	private static Logger logger = Logger.getLogger(BrokerService.class.getName());
+	private static final ExceptionLogger exceptionLogger = new ExceptionLogger(logger, 1000, 60000); //logs off the request thread
 
 	private static final String DEFAULT_CURRENCY = "USD";
 	private static final double DONT_RECALCULATE = -1.0;
+	private static final String APPLICATION_NDJSON = "application/x-ndjson";
+	private static final String APPLICATION_CBOR = CborProvider.APPLICATION_CBOR;
+	private static final String ACCOUNT = "Account";
+	private static final String CASH_ACCOUNT = "CashAccount";
+	private static final String RETURNS_ERROR = "Error";
+	private static final Set<String> RESERVED_OWNERS = Set.of("batch", "returns"); //GET /{owner} would be shadowed by these
+
+	//span attributes (rather than span names) carry the details of each call, so the number of span names is bounded
+	private static final AttributeKey<Long> PAGE = AttributeKey.longKey("broker.page");
+	private static final AttributeKey<Long> PAGE_SIZE = AttributeKey.longKey("broker.page_size");
+	private static final AttributeKey<Boolean> KEYSET = AttributeKey.booleanKey("broker.keyset");
+	private static final AttributeKey<Long> OWNER_COUNT = AttributeKey.longKey("broker.owner_count");
+	private static final AttributeKey<Long> BATCH_COUNT = AttributeKey.longKey("broker.batch_count");
+	private static final AttributeKey<Long> BROKER_COUNT = AttributeKey.longKey("broker.broker_count");
+
+	private static final Jsonb jsonb = JsonbBuilder.create(); //thread safe, so shared by all requests
 
 	private static boolean useAccount = false;
 	private static boolean useCashAccount = false;
@@ -91,12 +143,82 @@ public class BrokerService extends Application {
 	private static boolean staticInitialized = false;
 
 	private @Inject @ConfigProperty(name = "TEST_MODE", defaultValue = "false") boolean testMode;
+	private @Inject @ConfigProperty(name = "TEST_MODE_BROKERS", defaultValue = "0") int testModeBrokers;
+	private @Inject @ConfigProperty(name = "TEST_MODE_STOCKS", defaultValue = "5") int testModeStocks;
+	private @Inject @ConfigProperty(name = "TEST_MODE_SEED", defaultValue = "1") long testModeSeed;
+	private @Inject @ConfigProperty(name = "ASYNC_FANOUT", defaultValue = "false") boolean asyncFanout;
+	private @Inject @ConfigProperty(name = "BROKER_CACHE_ENABLED", defaultValue = "false") boolean brokerCacheEnabled;
+	private @Inject @ConfigProperty(name = "BROKER_CACHE_MAX_SIZE", defaultValue = "1000") int brokerCacheMaxSize;
+	private @Inject @ConfigProperty(name = "BROKER_CACHE_TTL_MILLIS", defaultValue = "10000") long brokerCacheTTL;
+	private @Inject @ConfigProperty(name = "ACCOUNT_BATCH_SIZE", defaultValue = "50") int accountBatchSize;
+	private @Inject @ConfigProperty(name = "BATCH_CONCURRENCY", defaultValue = "10") int batchConcurrency;
+	private @Inject @ConfigProperty(name = "BATCH_MAX_OWNERS", defaultValue = "100") int batchMaxOwners;
+	private @Inject @ConfigProperty(name = "MAX_PAGE_SIZE", defaultValue = "100") int maxPageSize;
+	private @Inject @ConfigProperty(name = "COALESCE_READS", defaultValue = "true") boolean coalesceReads;
+	private @Inject @ConfigProperty(name = "STALE_FALLBACK_ENABLED", defaultValue = "true") boolean staleFallbackEnabled;
+	private @Inject @ConfigProperty(name = "STALE_FALLBACK_MAX_SIZE", defaultValue = "10000") int staleFallbackMaxSize;
+	private @Inject @ConfigProperty(name = "STALE_FALLBACK_TTL_MILLIS", defaultValue = "3600000") long staleFallbackTTL;
+	private @Inject @ConfigProperty(name = "RETURNS_CACHE_ENABLED", defaultValue = "true") boolean returnsCacheEnabled;
+	private @Inject @ConfigProperty(name = "RETURNS_CACHE_MAX_SIZE", defaultValue = "1000") int returnsCacheMaxSize;
+	private @Inject @ConfigProperty(name = "RETURNS_CACHE_TTL_MILLIS", defaultValue = "60000") long returnsCacheTTL;
+	private @Inject @ConfigProperty(name = "OUTBOX_ENABLED", defaultValue = "false") boolean outboxEnabled;
+	private @Inject @ConfigProperty(name = "OUTBOX_DIRECTORY", defaultValue = "outbox") String outboxDirectory;
+	private @Inject @ConfigProperty(name = "OUTBOX_SEGMENT_BYTES", defaultValue = "1048576") int outboxSegmentBytes;
+	private @Inject @ConfigProperty(name = "OUTBOX_MAX_BACKOFF_MILLIS", defaultValue = "30000") long outboxMaxBackoff;
+	private @Inject @ConfigProperty(name = "ACCOUNT_INDEX_ENABLED", defaultValue = "true") boolean accountIndexEnabled;
+	private @Inject @ConfigProperty(name = "ACCOUNT_INDEX_MAX_SIZE", defaultValue = "1000000") int accountIndexMaxSize;
+	private @Inject @ConfigProperty(name = "ACCOUNT_INDEX_SNAPSHOT") Optional<String> accountIndexSnapshot;
+	private @Inject @ConfigProperty(name = "COMMISSION_CACHE_ENABLED", defaultValue = "false") boolean commissionCacheEnabled;
+	private @Inject @ConfigProperty(name = "COMMISSION_CACHE_MAX_SIZE", defaultValue = "10000") int commissionCacheMaxSize;
+	private @Inject @ConfigProperty(name = "COMMISSION_CACHE_TTL_MILLIS", defaultValue = "60000") long commissionCacheTTL;
 	private @Inject @RestClient PortfolioClient portfolioClient;
 	private @Inject @RestClient AccountClient accountClient;
 	private @Inject @RestClient CashAccountClient cashAccountClient;
 	private @Inject @RestClient TradeHistoryClient tradeHistoryClient;
 
 	@Inject private Tracer tracer;
+	@Inject private MetricRegistry metricRegistry;
+
+	private SyntheticBrokers syntheticBrokers = null; //only created if TEST_MODE is true and TEST_MODE_BROKERS is set
+	private VersionedCache<SerializedBroker> brokerCache = null; //only created if BROKER_CACHE_ENABLED is true
+
+	//loads of GET /{owner} currently in progress, shared by any concurrent reads of the same owner
+	private final ConcurrentHashMap<String, CompletableFuture<Broker>> inFlightLoads = new ConcurrentHashMap<>();
+	private Counter coalescedReads = null; //only created if COALESCE_READS is true
+	private Timer reconcileTimer = null;
+	private Histogram brokersPerPage = null;
+
+	//last known good values from the optional microservices, to fall back to when the fault tolerance layer gives up
+	//on one of them (only created if STALE_FALLBACK_ENABLED is true)
+	private OwnerCache<Account> lastKnownAccounts = null;
+	private OwnerCache<CashAccount> lastKnownCashAccounts = null;
+	private OwnerCache<String> lastKnownReturns = null;
+
+	//returns from the TradeHistory microservice, along with the portfolio total they were computed for (only created
+	//if RETURNS_CACHE_ENABLED is true)
+	private VersionedCache<CachedReturns> returnsCache = null;
+
+	//the Account and CashAccount updates that follow a trade, delivered in the background (only created if
+	//OUTBOX_ENABLED is true)
+	private Outbox outbox = null;
+
+	//accountID of each owner, so trades needn't get it from the Portfolio microservice (only created if
+	//ACCOUNT_INDEX_ENABLED is true)
+	private AccountIndex accountIndex = null;
+
+	//the latest account of each owner, for the nextCommission of their next trade (only created if
+	//COMMISSION_CACHE_ENABLED is true)
+	private VersionedCache<Account> commissionCache = null;
+
+	private static class CachedReturns {
+		private final double total;
+		private final String returns;
+
+		private CachedReturns(double total, String returns) {
+			this.total = total;
+			this.returns = returns;
+		}
+	}
 
 	@Inject
 	JsonWebToken jwt;
@@ -153,105 +275,373 @@ public class BrokerService extends Application {
 		}
 	}
 
+	@PostConstruct
+	void initialize() {
+		if (testMode && (testModeBrokers > 0)) {
+			int count = Math.min(testModeBrokers, SyntheticBrokers.MAX_SIZE);
+			long start = System.currentTimeMillis();
+			syntheticBrokers = new SyntheticBrokers(count, Math.max(testModeStocks, 0), testModeSeed);
+			logger.info("Generated "+count+" synthetic brokers with "+testModeStocks+" stocks each in "+(System.currentTimeMillis()-start)+" ms");
+		}
+		reconcileTimer = metricRegistry.timer("getBrokers.reconcile");
+		brokersPerPage = metricRegistry.histogram("getBrokers.brokerCount");
+		if (brokerCacheEnabled) {
+			logger.info("Caching up to "+brokerCacheMaxSize+" brokers for "+brokerCacheTTL+" ms");
+			brokerCache = new VersionedCache<>("brokerCache", brokerCacheMaxSize, brokerCacheTTL, metricRegistry);
+		}
+		if (coalesceReads) {
+			coalescedReads = metricRegistry.counter("getBroker.coalesced");
+		}
+		if (staleFallbackEnabled) {
+			logger.info("Falling back to last known good values for up to "+staleFallbackMaxSize+" owners for "+staleFallbackTTL+" ms");
+			lastKnownAccounts = new OwnerCache<>("lastKnownAccounts", staleFallbackMaxSize, staleFallbackTTL, metricRegistry);
+			lastKnownCashAccounts = new OwnerCache<>("lastKnownCashAccounts", staleFallbackMaxSize, staleFallbackTTL, metricRegistry);
+			lastKnownReturns = new OwnerCache<>("lastKnownReturns", staleFallbackMaxSize, staleFallbackTTL, metricRegistry);
+		}
+		if (returnsCacheEnabled) {
+			logger.info("Caching portfolio returns for up to "+returnsCacheMaxSize+" owners for "+returnsCacheTTL+" ms");
+			returnsCache = new VersionedCache<>("returnsCache", returnsCacheMaxSize, returnsCacheTTL, metricRegistry);
+		}
+		if (accountIndexEnabled) {
+			accountIndex = new AccountIndex(accountIndexMaxSize);
+			metricRegistry.gauge("accountIndex.size", accountIndex, AccountIndex::size);
+			if (accountIndexSnapshot.isPresent()) try {
+				int count = accountIndex.load(Paths.get(accountIndexSnapshot.get()));
+				logger.info("Loaded "+count+" accountIDs from "+accountIndexSnapshot.get());
+			} catch (IOException e) {
+				logger.warning("Unable to load the account index snapshot, so starting with an empty one: "+e.getMessage());
+			}
+		}
+		if (commissionCacheEnabled) {
+			logger.info("Caching the next commission of up to "+commissionCacheMaxSize+" owners for "+commissionCacheTTL+" ms");
+			commissionCache = new VersionedCache<>("commissionCache", commissionCacheMaxSize, commissionCacheTTL, metricRegistry);
+		}
+		if (outboxEnabled) try {
+			logger.info("Delivering Account and CashAccount updates via the outbox in "+Paths.get(outboxDirectory).toAbsolutePath());
+			outbox = new Outbox(Paths.get(outboxDirectory), outboxSegmentBytes, outboxMaxBackoff, this::deliver, BrokerService::logException, metricRegistry);
+		} catch (IOException e) {
+			logger.warning("Unable to open the outbox, so updating Account and CashAccount synchronously: "+e.getMessage());
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		if (outbox != null) outbox.close();
+		if ((accountIndex != null) && accountIndexSnapshot.isPresent()) try {
+			accountIndex.save(Paths.get(accountIndexSnapshot.get()));
+			logger.info("Saved "+accountIndex.size()+" accountIDs to "+accountIndexSnapshot.get());
+		} catch (IOException e) {
+			logger.warning("Unable to save the account index snapshot: "+e.getMessage());
+		}
+		exceptionLogger.shutdown();
+	}
+
 	@GET
 	@Path("/")
-	@Produces(MediaType.APPLICATION_JSON)
+	@Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR+";qs=0.5"})
 	@RolesAllowed({"StockTrader", "StockViewer"})
-	public List<Broker> getBrokers(@QueryParam("page") @DefaultValue("1") int pageNumber, @QueryParam("pageSize") @DefaultValue("10") int pageSize) {
-		if (testMode) return getHardcodedBrokers();
+	public List<Broker> getBrokers(@QueryParam("page") @DefaultValue("1") int pageNumber, @QueryParam("pageSize") @DefaultValue("10") int pageSize,
+			@QueryParam("cursor") String cursor, @Context UriInfo uriInfo, @Context HttpServletResponse response) {
+		if (testMode) return getTestBrokers(pageNumber, pageSize, cursor, uriInfo, response);
 
-		//Microprofile will propagate headers. Check src/main/resources/META-INF/microprofile-config.properties.
-//		List<Portfolio> portfolios = portfolioClient.getPortfolios(jwt);
-		Span getPortfoliosSpan = tracer.spanBuilder("portfolioClient.getPortfolios("+pageNumber+", "+pageSize+")")
-				.startSpan();
-		List<Portfolio> portfolios;
-		try (Scope scope = getPortfoliosSpan.makeCurrent()) {
-			logger.fine("Calling PortfolioClient.getPortfolios(pageNumber, pageSize)" + " ("+pageNumber+", "+pageSize+")");
-			portfolios = portfolioClient.getPortfolios(pageNumber, pageSize);
-		}
-		finally {
-			getPortfoliosSpan.end();
-		}
+		List<Portfolio> portfolios = getPortfolioPage(pageNumber, pageSize, cursor, uriInfo, response);
+		List<Broker> brokers = assembleBrokers(portfolios);
+
+		brokersPerPage.update(brokers.size());
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning " + brokers.size() + " brokers");
 
-		int portfolioCount=0;
+		return brokers;
+	}
+
+	/** Gets the brokers for a list of owners in one request, such as for a screen showing many named owners.  The
+	 *  portfolios are fetched concurrently (at most BATCH_CONCURRENCY at a time), then the accounts for all of them
+	 *  in a single call.  Owners without a portfolio are left out; the rest are returned in the order requested.
+	 */
+	@GET
+	@Path("/batch")
+	@Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR+";qs=0.5"})
+	@RolesAllowed({"StockTrader", "StockViewer"})
+	public List<Broker> getBrokersBatch(@QueryParam("owners") String owners) {
+		List<String> ownerList = parseOwners(owners);
+		if (testMode && (syntheticBrokers != null)) return ownerList.stream().map(syntheticBrokers::get).filter(Objects::nonNull).collect(Collectors.toList());
+		if (testMode) return getHardcodedBrokers().stream().filter(broker -> ownerList.contains(broker.getOwner())).collect(Collectors.toList());
+
+		List<Portfolio> portfolios = getPortfoliosConcurrently(ownerList);
+		List<Broker> brokers = assembleBrokers(portfolios);
+
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning " + brokers.size() + " of " + ownerList.size() + " requested brokers");
+
+		return brokers;
+	}
+
+	/** Matches up a page of portfolios with their accounts, if the Account microservice is enabled */
+	private List<Broker> assembleBrokers(List<Portfolio> portfolios) {
 		List<Broker> brokers = Collections.emptyList();
-		Set<Broker> brokersSet;
 		if (portfolios!=null && portfolios.size()!=0) {
-			portfolioCount = portfolios.size();
-			logger.fine("Portfolio count is: " + portfolioCount);
-
-			brokers = new ArrayList<>(portfolioCount);
-			List<Account> accounts;
+			if (logger.isLoggable(Level.FINE)) logger.fine("Portfolio count is: " + portfolios.size());
 
 			if (useAccount) try {
-				logger.fine("Calling AccountClient.getAccounts()");
-				List<String> owners = portfolios.parallelStream().map(Portfolio::getOwner).collect(Collectors.toUnmodifiableList());
-				Span getAccountsSpan = tracer.spanBuilder("accountClient.getAccounts("+pageNumber+", "+pageSize+", "+owners+")")
-						.startSpan();
-				try (Scope scope = getAccountsSpan.makeCurrent()) {
-					logger.fine("Getting accounts for these owners: " + owners);
-					accounts = accountClient.getAccounts(pageNumber, pageSize, owners);
-				}
-				finally {
-					getAccountsSpan.end();
-				}
+				List<Account> accounts = getAccounts(portfolios);
 
 				Span reconcileSpan = tracer.spanBuilder("Reconciling accounts and portfolios").startSpan();
 				// Match up the accounts and portfolios
-				// TODO: Pagination should reduce the amount of work to do here
-				try (Scope scope = reconcileSpan.makeCurrent()) {
-					Map<String, Account> mapOfAccounts = accounts
-							.stream()
-							.filter(a -> a.getId() !="null" || a.getId()!=null)
-							.collect(Collectors.toMap(Account::getId, account -> account));
-					Set<String> accountIds = accounts
-							.stream()
-							.map(Account::getId)
-							.collect(Collectors.toSet());
-
-					brokersSet = portfolios.stream()
-							.parallel()
-							.filter(portfolio -> accountIds.contains(portfolio.getAccountID()))
-							.map(portfolio -> {
-								String ownerId = portfolio.getAccountID();
-								// Don't log here, you'll get a NPE if you uncomment the following line
-								// logger.finer("Found account corresponding to the portfolio for " + owner);
-								return new Broker(portfolio, mapOfAccounts.get(ownerId));
-							})
-							.collect(Collectors.toSet());
-
-					// Now handle the cases where there is no matching account-portfolio mapping
-					brokersSet.addAll(portfolios.stream()
-							.parallel()
-							.filter(Predicate.not(portfolio -> accountIds.contains(portfolio.getAccountID())))
-							.map(portfolio -> {
-								// Don't log here, you'll get a NPE
-								// logger.finer("Did not find account corresponding to the portfolio for " + owner);
-								return new Broker(portfolio, null);
-							})
-							.collect(Collectors.toSet()));
+				try (Scope scope = reconcileSpan.makeCurrent(); Timer.Context timing = reconcileTimer.time()) {
+					brokers = BrokerAssembler.reconcile(portfolios, accounts);
+					if (reconcileSpan.isRecording()) reconcileSpan.setAttribute(BROKER_COUNT, brokers.size());
 				}
 				finally {
 					reconcileSpan.end();
 				}
-
-				brokers = brokersSet.stream().toList();
 			} catch (Throwable t) {
-				logException(t);
+				brokers = reconcileWithLastKnownAccounts(portfolios, t);
 			} else {
 				//just build the Broker array directly from the Portfolio array, since Account is disabled
 				logger.fine("Handling case of Account being disabled");
-				for (int index=0; index<portfolioCount; index++) {
-					brokers.add(new Broker(portfolios.get(index), null));
+				brokers = BrokerAssembler.reconcile(portfolios, null);
+			}
+		}
+		return brokers;
+	}
+
+	/** Same as getBrokers, but returns newline-delimited JSON (one broker per line), writing each broker to the
+	 *  response as soon as its portfolio and account have been matched up, rather than building the whole list
+	 *  first.  Clients opt into this via an Accept header of application/x-ndjson; JSON remains the default.
+	 */
+	@GET
+	@Path("/")
+	@Produces(APPLICATION_NDJSON+";qs=0.5")
+	@RolesAllowed({"StockTrader", "StockViewer"})
+	public StreamingOutput streamBrokers(@QueryParam("page") @DefaultValue("1") int pageNumber, @QueryParam("pageSize") @DefaultValue("10") int pageSize,
+			@QueryParam("cursor") String cursor, @Context UriInfo uriInfo, @Context HttpServletResponse response) {
+		List<Portfolio> portfolios = testMode ? Collections.emptyList() : getPortfolioPage(pageNumber, pageSize, cursor, uriInfo, response);
+		if (portfolios == null) portfolios = Collections.emptyList();
+
+		Map<String, Account> accountsByID = Collections.emptyMap();
+		boolean stale = false;
+		if (useAccount && !portfolios.isEmpty()) try {
+			accountsByID = BrokerAssembler.mapAccountsByID(getAccounts(portfolios));
+		} catch (Throwable t) {
+			logException(t); //still stream the portfolios, just without their account details
+			stale = isFallbackFor(t, lastKnownAccounts); //or with their last known good ones, if we have them
+		}
+
+		final List<Portfolio> portfolioPage = portfolios;
+		final Map<String, Account> accountPage = accountsByID;
+		final boolean staleAccounts = stale;
+		final List<Broker> testBrokers = testMode ? getTestBrokers(pageNumber, pageSize, cursor, uriInfo, response) : null;
+		return output -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			int count = 0;
+			if (testMode) {
+				for (Broker broker : testBrokers) {
+					writer.write(jsonb.toJson(broker));
+					writer.write('\n');
+					count++;
+				}
+			} else for (Portfolio portfolio : portfolioPage) {
+				Broker broker;
+				if (staleAccounts) {
+					Account account = lastKnownAccounts.get(portfolio.getOwner());
+					broker = new Broker(portfolio, account);
+					if (account != null) broker.addDegraded(ACCOUNT);
+				} else {
+					broker = new Broker(portfolio, accountPage.get(portfolio.getAccountID()));
 				}
+				writer.write(jsonb.toJson(broker));
+				writer.write('\n');
+				count++;
 			}
+			writer.flush();
+			brokersPerPage.update(count);
+			if (logger.isLoggable(Level.FINE)) logger.fine("Streamed " + count + " brokers");
+		};
+	}
+
+	/** Builds the brokers for a page whose accounts couldn't be fetched, using each owner's last known good account
+	 *  if the fault tolerance layer gave up on the Account microservice, and marking those brokers as degraded.
+	 */
+	private List<Broker> reconcileWithLastKnownAccounts(List<Portfolio> portfolios, Throwable t) {
+		logException(t);
+		boolean stale = isFallbackFor(t, lastKnownAccounts);
+		Broker[] brokers = new Broker[portfolios.size()];
+		int index = 0;
+		for (Portfolio portfolio : portfolios) {
+			Account account = stale ? lastKnownAccounts.get(portfolio.getOwner()) : null;
+			Broker broker = new Broker(portfolio, account);
+			if (account != null) broker.addDegraded(ACCOUNT);
+			brokers[index++] = broker;
 		}
+		return Arrays.asList(brokers);
+	}
 
-		logger.fine("Returning " + brokers.size() + " brokers");
+	/** Gets a page of portfolios, by page number or (if passed the cursor from the previous page) by the last owner on
+	 *  the previous page alone, adding a Link header with the cursor for the next page if there might be one.  Either
+	 *  way, callers can walk every broker by following the next links, without the cost of ever larger offsets downstream.
+	 */
+	private List<Portfolio> getPortfolioPage(int pageNumber, int pageSize, String cursor, UriInfo uriInfo, HttpServletResponse response) {
+		pageSize = clampPageSize(pageSize);
+		PageCursor position = (cursor != null) ? PageCursor.decode(cursor) : null;
+		List<Portfolio> portfolios = getPortfolios(pageNumber, pageSize, (position != null) ? position.after : null);
+
+		addNextLink(PageCursor.next(pageSize, portfolios), uriInfo, response);
+		return portfolios;
+	}
+
+	/** In TEST_MODE, gets a page of the synthetic brokers if TEST_MODE_BROKERS is set, else the six hard-coded ones */
+	private List<Broker> getTestBrokers(int pageNumber, int pageSize, String cursor, UriInfo uriInfo, HttpServletResponse response) {
+		if (syntheticBrokers == null) return getHardcodedBrokers();
 
+		pageSize = clampPageSize(pageSize);
+		PageCursor position = (cursor != null) ? PageCursor.decode(cursor) : null;
+		List<Broker> brokers = (position != null) ? syntheticBrokers.after(position.after, pageSize) : syntheticBrokers.page(pageNumber, pageSize);
+
+		if (!brokers.isEmpty() && (brokers.size() == pageSize)) {
+			addNextLink(new PageCursor(brokers.get(brokers.size() - 1).getOwner()), uriInfo, response);
+		}
 		return brokers;
 	}
 
+	/** Limits the page size to between 1 and MAX_PAGE_SIZE, so one request can't fan out to every owner at once */
+	private int clampPageSize(int pageSize) {
+		return Math.max(1, Math.min(pageSize, maxPageSize));
+	}
+
+	private static void addNextLink(PageCursor next, UriInfo uriInfo, HttpServletResponse response) {
+		if (next != null) {
+			URI link = uriInfo.getRequestUriBuilder().replaceQueryParam("page").replaceQueryParam("cursor", next.encode()).build();
+			response.addHeader("Link", "<"+link+">; rel=\"next\"");
+		}
+	}
+
+	/** Gets a page of portfolios from the Portfolio microservice, by page number, or if after is set, by keyset */
+	private List<Portfolio> getPortfolios(int pageNumber, int pageSize, String after) {
+		//Microprofile will propagate headers. Check src/main/resources/META-INF/microprofile-config.properties.
+//		List<Portfolio> portfolios = portfolioClient.getPortfolios(jwt);
+		Span getPortfoliosSpan = tracer.spanBuilder("portfolioClient.getPortfolios").startSpan();
+		if (getPortfoliosSpan.isRecording()) { //only spend time on attributes if this trace was sampled
+			if (after == null) getPortfoliosSpan.setAttribute(PAGE, pageNumber);
+			getPortfoliosSpan.setAttribute(PAGE_SIZE, pageSize);
+			getPortfoliosSpan.setAttribute(KEYSET, after != null);
+		}
+		List<Portfolio> portfolios;
+		try (Scope scope = getPortfoliosSpan.makeCurrent()) {
+			if (after != null) {
+				if (logger.isLoggable(Level.FINE)) logger.fine("Calling PortfolioClient.getPortfolios(pageSize, after)" + " ("+pageSize+", "+after+")");
+				portfolios = portfolioClient.getPortfolios(pageSize, after);
+			} else {
+				if (logger.isLoggable(Level.FINE)) logger.fine("Calling PortfolioClient.getPortfolios(pageNumber, pageSize)" + " ("+pageNumber+", "+pageSize+")");
+				portfolios = portfolioClient.getPortfolios(pageNumber, pageSize);
+			}
+		}
+		finally {
+			getPortfoliosSpan.end();
+		}
+		return portfolios;
+	}
+
+	/** Splits the comma-separated owners query param, dropping blanks and duplicates */
+	private List<String> parseOwners(String owners) {
+		Set<String> ownerSet = new LinkedHashSet<>();
+		if (owners != null) for (String owner : owners.split(",")) {
+			owner = owner.trim();
+			if (!owner.isEmpty()) ownerSet.add(owner);
+		}
+		if (ownerSet.isEmpty()) throw new BadRequestException("No owners specified");
+		if (ownerSet.size() > batchMaxOwners) throw new BadRequestException("At most "+batchMaxOwners+" owners can be requested at once");
+		return new ArrayList<>(ownerSet);
+	}
+
+	/** Gets the portfolios of the specified owners from the Portfolio microservice, with at most BATCH_CONCURRENCY
+	 *  calls in flight at once.  Owners without a portfolio are skipped.
+	 */
+	private List<Portfolio> getPortfoliosConcurrently(List<String> owners) {
+		List<CompletionStage<Portfolio>> pending = callConcurrently(owners, owner -> {
+			logger.fine("Calling PortfolioClient.getPortfolioAsync()");
+			return portfolioClient.getPortfolioAsync(owner, false);
+		});
+
+		List<Portfolio> portfolios = new ArrayList<>(pending.size());
+		for (CompletionStage<Portfolio> stage : pending) try {
+			Portfolio portfolio = await(stage);
+			if (portfolio != null) portfolios.add(portfolio);
+		} catch (WebApplicationException e) {
+			if (e.getResponse().getStatus() != 404) throw e;
+			logger.fine("Skipping an owner without a portfolio");
+		}
+		return portfolios;
+	}
+
+	/** Starts an asynchronous downstream call for each of the specified owners (or batches of them), returning them
+	 *  in the same order, with at most BATCH_CONCURRENCY in flight at once.  The calls are all started from the request
+	 *  thread, so that the JWT gets propagated; once the limit is reached, it waits for one of them to complete before
+	 *  starting the next.  A call that fails to start (such as when its circuit breaker is open) gives a failed stage,
+	 *  so it's handled along with that owner's result.
+	 */
+	private <K, T> List<CompletionStage<T>> callConcurrently(List<K> owners, Function<K, CompletionStage<T>> call) {
+		Semaphore permits = new Semaphore(batchConcurrency);
+		List<CompletionStage<T>> pending = new ArrayList<>(owners.size());
+		for (K owner : owners) {
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ServiceUnavailableException("Interrupted while calling the downstream microservices");
+			}
+			CompletionStage<T> stage;
+			try {
+				stage = call.apply(owner);
+			} catch (RuntimeException e) {
+				stage = CompletableFuture.failedFuture(e);
+			}
+			stage.whenComplete((result, t) -> permits.release());
+			pending.add(stage);
+		}
+		return pending;
+	}
+
+	/** Gets the accounts for the owners of the specified portfolios from the Account microservice.  The owners are
+	 *  looked up in sub-batches of at most ACCOUNT_BATCH_SIZE (so the URLs stay short enough for proxies), fetched
+	 *  concurrently (at most BATCH_CONCURRENCY at a time), each asking for exactly as many accounts as it has owners, so none get paged out.
+	 */
+	private List<Account> getAccounts(List<Portfolio> portfolios) {
+		List<String> owners = portfolios.stream().map(Portfolio::getOwner).collect(Collectors.toUnmodifiableList());
+		int batchSize = Math.max(1, accountBatchSize);
+		Span getAccountsSpan = tracer.spanBuilder("accountClient.getAccounts").startSpan();
+		if (getAccountsSpan.isRecording()) { //only spend time on attributes if this trace was sampled
+			getAccountsSpan.setAttribute(OWNER_COUNT, owners.size());
+			getAccountsSpan.setAttribute(BATCH_COUNT, (owners.size() + batchSize - 1) / batchSize);
+		}
+		List<Account> accounts;
+		try (Scope scope = getAccountsSpan.makeCurrent()) {
+			if (logger.isLoggable(Level.FINE)) logger.fine("Getting accounts for these owners: " + owners);
+			if (owners.size() <= batchSize) {
+				logger.fine("Calling AccountClient.getAccounts()");
+				accounts = accountClient.getAccounts(1, owners.size(), owners);
+			} else {
+				List<List<String>> batches = new ArrayList<>(owners.size() / batchSize + 1);
+				for (int from = 0; from < owners.size(); from += batchSize) {
+					batches.add(owners.subList(from, Math.min(from + batchSize, owners.size())));
+				}
+				List<CompletionStage<List<Account>>> pending = callConcurrently(batches, batch -> {
+					logger.fine("Calling AccountClient.getAccountsAsync()");
+					return accountClient.getAccountsAsync(1, batch.size(), batch);
+				});
+				accounts = new ArrayList<>(owners.size());
+				for (CompletionStage<List<Account>> stage : pending) {
+					List<Account> batch = await(stage);
+					if (batch != null) accounts.addAll(batch);
+				}
+			}
+		}
+		finally {
+			getAccountsSpan.end();
+		}
+		if ((lastKnownAccounts != null) && (accounts != null)) for (Account account : accounts) {
+			remember(lastKnownAccounts, account.getOwner(), account);
+		}
+		return accounts;
+	}
+
 //	@GET
 //	@Path("/")
 //	@Produces(MediaType.APPLICATION_JSON)
@@ -328,9 +718,11 @@ public class BrokerService extends Application {
 
 	@POST
 	@Path("/{owner}")
-	@Produces(MediaType.APPLICATION_JSON)
+	@Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR+";qs=0.5"})
 	//	@RolesAllowed({"StockTrader"}) //Couldn't get this to work; had to do it through the web.xml instead :(
 	public Broker createBroker(@PathParam("owner") String owner, @QueryParam("balance") double balance, @QueryParam("currency") String currency, @Context HttpServletRequest request) {
+		if (RESERVED_OWNERS.contains(owner)) throw new BadRequestException("The owner name "+owner+" is reserved");
+
 		Broker broker = null;
 		Portfolio portfolio = null;
 
@@ -340,12 +732,14 @@ public class BrokerService extends Application {
 			logger.fine("Calling AccountClient.createAccount()");
 			account = accountClient.createAccount(owner);
 			if (account != null) accountID = account.getId();
+			remember(lastKnownAccounts, owner, account);
 		} catch (Throwable t) {
 			logException(t);
 		}
 
 		logger.fine("Calling PortfolioClient.createPortfolio()");
 		portfolio = portfolioClient.createPortfolio(owner, accountID);
+		if ((portfolio != null) && (accountIndex != null)) accountIndex.put(owner, accountID);
 
 		String answer = "broker";
 		if (portfolio != null) {
@@ -354,12 +748,13 @@ public class BrokerService extends Application {
 			answer = "null";
 		}
 
-		CashAccount cashAccount = null;
-		if (useCashAccount) try {
+		//only once the portfolio exists, so a failed create can't leave behind (or reset) a cash account
+		if (useCashAccount && (broker != null)) try {
 			if (currency == null) currency = DEFAULT_CURRENCY;
-			cashAccount = new CashAccount(owner, balance, currency);
+			CashAccount cashAccount = new CashAccount(owner, balance, currency);
 			logger.fine("Calling CashAccountClient.createCashAccount()");
 			cashAccount = cashAccountClient.createCashAccount(owner, cashAccount);
+			remember(lastKnownCashAccounts, owner, cashAccount);
 			if (cashAccount != null) {
 				broker.setCashAccountBalance(cashAccount.getBalance());
 				broker.setCashAccountCurrency(cashAccount.getCurrency());
@@ -368,7 +763,8 @@ public class BrokerService extends Application {
 			logException(t);
 		}
 
-		logger.fine("Returning "+answer);
+		invalidateCachedBroker(owner);
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning "+answer);
 
 		return broker;
 	}
@@ -377,42 +773,165 @@ public class BrokerService extends Application {
 	@Path("/{owner}")
 	@Produces(MediaType.APPLICATION_JSON)
 //	@RolesAllowed({"StockTrader", "StockViewer"}) //Couldn't get this to work; had to do it through the web.xml instead :(
-	public Broker getBroker(@PathParam("owner") String owner, @Context HttpServletRequest request) {
-		Broker broker = null;
+	public Response getBroker(@PathParam("owner") String owner, @Context HttpServletRequest request, @Context Request conditions) {
+		SerializedBroker serialized = getSerializedBroker(owner);
+		if (serialized == null) {
+			logger.fine("Returning null");
+			return Response.noContent().build();
+		}
+
+		ResponseBuilder notModified = conditions.evaluatePreconditions(serialized.etag); //handles If-None-Match
+		if (notModified != null) {
+			logger.fine("Returning not modified");
+			return notModified.tag(serialized.etag).build();
+		}
+		return Response.ok(serialized.json, MediaType.APPLICATION_JSON).tag(serialized.etag).build();
+	}
+
+	/** Same as getBroker, but in CBOR, for clients that ask for it via their Accept header */
+	@GET
+	@Path("/{owner}")
+	@Produces(APPLICATION_CBOR+";qs=0.5")
+//	@RolesAllowed({"StockTrader", "StockViewer"}) //Couldn't get this to work; had to do it through the web.xml instead :(
+	public Broker getBrokerCbor(@PathParam("owner") String owner, @Context HttpServletRequest request) {
+		if (brokerCache == null) return loadBrokerOnce(owner); //no point serializing it to JSON too
+
+		SerializedBroker serialized = getSerializedBroker(owner);
+		return (serialized != null) ? serialized.broker : null;
+	}
+
+	/** Gets the broker already serialized to JSON, from the broker cache if enabled (so that repeat reads skip
+	 *  JSON-B entirely), else from the downstream microservices.
+	 */
+	private SerializedBroker getSerializedBroker(String owner) {
+		if (brokerCache == null) return serialize(loadBrokerOnce(owner));
+
+		SerializedBroker serialized = brokerCache.get(owner);
+		if (serialized == null) {
+			long version = brokerCache.version(owner);
+			serialized = serialize(loadBrokerOnce(owner));
+			if ((serialized != null) && (serialized.broker.getDegraded() == null)) brokerCache.putIfCurrent(owner, serialized, version);
+		} else {
+			logger.fine("Returning cached broker");
+		}
+
+		return serialized;
+	}
+
+	private static SerializedBroker serialize(Broker broker) {
+		return (broker != null) ? new SerializedBroker(broker, jsonb.toJson(broker)) : null;
+	}
+
+	/** Single-flight loading: concurrent reads of the same owner share one in-flight load, rather than each sending
+	 *  identical requests downstream.  The load runs on the request thread of whichever read got there first (so
+	 *  that its JWT gets propagated), and the others just wait for its result, or its exception (such as a 404).
+	 */
+	private Broker loadBrokerOnce(String owner) {
+		if (!coalesceReads) return loadBroker(owner);
+
+		CompletableFuture<Broker> load = new CompletableFuture<>();
+		CompletableFuture<Broker> inFlight = inFlightLoads.putIfAbsent(owner, load);
+		if (inFlight != null) {
+			coalescedReads.inc();
+			logger.fine("Waiting for the load of this owner already in progress");
+			return await(inFlight);
+		}
+
+		try {
+			Broker broker = loadBroker(owner);
+			load.complete(broker);
+			return broker;
+		} catch (RuntimeException | Error e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlightLoads.remove(owner, load);
+		}
+	}
+
+	/** Assembles the Broker from the downstream microservices, bypassing the broker cache.  With ASYNC_FANOUT, the
+	 *  CashAccount lookup (which only needs the owner) runs at the same time as the Portfolio lookup, so the latency
+	 *  is that of the slowest dependency rather than the sum of all three.  The Account lookup always has to wait for
+	 *  the Portfolio, since it needs the accountID and total from it.
+	 */
+	private Broker loadBroker(String owner) {
+		if (syntheticBrokers != null) return syntheticBrokers.get(owner);
+
 		Portfolio portfolio = null;
+		Supplier<CashAccount> cashAccount = null;
+		if (asyncFanout) {
+			logger.fine("Calling PortfolioClient.getPortfolioAsync()");
+			CompletionStage<Portfolio> portfolioStage = portfolioClient.getPortfolioAsync(owner, false);
+
+			if (useCashAccount) {
+				CompletionStage<CashAccount> cashAccountStage;
+				try {
+					logger.fine("Calling CashAccountClient.getCashAccountAsync()");
+					cashAccountStage = cashAccountClient.getCashAccountAsync(owner);
+				} catch (RuntimeException e) { //such as an open circuit breaker, which can fall back below
+					cashAccountStage = CompletableFuture.failedFuture(e);
+				}
+				CompletionStage<CashAccount> started = cashAccountStage;
+				cashAccount = () -> await(started);
+			}
 
-		logger.fine("Calling PortfolioClient.getPortfolio()");
-		portfolio = portfolioClient.getPortfolio(owner, false);
+			portfolio = await(portfolioStage); //throws a 404 exception if not present
+		} else {
+			logger.fine("Calling PortfolioClient.getPortfolio()");
+			portfolio = portfolioClient.getPortfolio(owner, false);
+
+			if (useCashAccount) cashAccount = () -> {
+				logger.fine("Calling CashAccountClient.getCashAccount()");
+				return cashAccountClient.getCashAccount(owner);
+			};
+		}
+
+		return buildBroker(owner, portfolio, cashAccount);
+	}
+
+	/** Builds the Broker for this portfolio, looking up its account, then getting its cash account from the supplier
+	 *  given (if any), which either makes the call or waits for the one already started.
+	 */
+	private Broker buildBroker(String owner, Portfolio portfolio, Supplier<CashAccount> cashAccountSupplier) {
+		Broker broker = null;
 
 		String answer = "broker";
 		if (portfolio!=null) {
 			String accountID = portfolio.getAccountID();
+			if (accountIndex != null) accountIndex.put(owner, accountID);
 			double total = portfolio.getTotal();
 			Account account = null;
+			boolean staleAccount = false;
 			if (useAccount) try {
+				long version = (commissionCache != null) ? commissionCache.version(owner) : 0;
 				logger.fine("Calling AccountClient.getAccount()");
 				account = accountClient.getAccount(accountID, total);
 				if (account == null) logger.warning("Account not found for "+owner);
+				remember(lastKnownAccounts, owner, account);
+				if (commissionCache != null) commissionCache.putIfCurrent(owner, account, version);
 			} catch (Throwable t) {
-				logException(t);
+				account = fallback(lastKnownAccounts, owner, t);
+				staleAccount = (account != null);
 			}
 			broker = new Broker(portfolio, account);
+			if (staleAccount) broker.addDegraded(ACCOUNT);
 
 			CashAccount cashAccount = null;
-			if (useCashAccount) try {
-				logger.fine("Calling CashAccountClient.getCashAccount()");
-				cashAccount = cashAccountClient.getCashAccount(owner);
-				if (cashAccount != null) {
-					broker.setCashAccountBalance(cashAccount.getBalance());
-					broker.setCashAccountCurrency(cashAccount.getCurrency());
-				}
+			if (cashAccountSupplier != null) try {
+				cashAccount = cashAccountSupplier.get();
+				remember(lastKnownCashAccounts, owner, cashAccount);
 			} catch (Throwable t) {
-				logException(t);
-			}	
+				cashAccount = fallback(lastKnownCashAccounts, owner, t);
+				if (cashAccount != null) broker.addDegraded(CASH_ACCOUNT);
+			}
+			if (cashAccount != null) {
+				broker.setCashAccountBalance(cashAccount.getBalance());
+				broker.setCashAccountCurrency(cashAccount.getCurrency());
+			}
 		} else {
 			answer = "null";
 		}
-		logger.fine("Returning "+answer);
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning "+answer);
 
 		return broker;
 	}
@@ -432,12 +951,23 @@ public class BrokerService extends Application {
 		if (portfolio != null) {
 			Double portfolioValue = portfolio.getTotal();
 
+			//returns only change when the portfolio does, so a cached value for the same total is still good
+			CachedReturns cached = (returnsCache != null) ? returnsCache.get(owner) : null;
+			if ((cached != null) && (Double.compare(cached.total, portfolioValue) == 0)) {
+				logger.fine("Returning cached portfolio returns");
+				return cached.returns;
+			}
+
 			try {
+				long version = (returnsCache != null) ? returnsCache.version(owner) : 0;
 				result = tradeHistoryClient.getReturns(owner, portfolioValue);
-				logger.fine("Got portfolio returns for "+owner);
+				if (logger.isLoggable(Level.FINE)) logger.fine("Got portfolio returns for "+owner);
+				remember(lastKnownReturns, owner, result);
+				if ((returnsCache != null) && (result != null)) returnsCache.putIfCurrent(owner, new CachedReturns(portfolioValue, result), version);
 			} catch (Throwable t) {
 				logger.info("Unable to invoke TradeHistory.  This is an optional microservice and the following exception is expected if it is not deployed");
-				logException(t);
+				String lastKnown = fallback(lastKnownReturns, owner, t);
+				if (lastKnown != null) result = lastKnown;
 			}
 		} else {
 			logger.warning("Portfolio not found to get returns for "+owner);
@@ -445,9 +975,78 @@ public class BrokerService extends Application {
 		return result;
 	}
 
+	/** Gets the returns of many owners in one request, such as for a leaderboard, as a JSON object mapping each owner
+	 *  to their returns.  The portfolios are fetched concurrently, then the returns, at most BATCH_CONCURRENCY at a
+	 *  time.  Owners whose returns couldn't be gotten (including those without a portfolio) map to "Error", rather
+	 *  than failing the whole request.
+	 */
+	@GET
+	@Path("/returns")
+	@Produces(MediaType.APPLICATION_JSON)
+	@RolesAllowed({"StockTrader", "StockViewer"})
+	public Map<String, String> getPortfolioReturnsBatch(@QueryParam("owners") String owners) {
+		List<String> ownerList = parseOwners(owners);
+		Map<String, String> results = new LinkedHashMap<>();
+		if (!useTradeHistory) {
+			logger.info("getPortfolioReturnsBatch called yet TRADE_HISTORY_ENABLED is false!");
+			for (String owner : ownerList) results.put(owner, "Unavailable");
+			return results;
+		}
+
+		List<CompletionStage<Portfolio>> portfolioStages = callConcurrently(ownerList, owner -> {
+			logger.fine("Calling PortfolioClient.getPortfolioAsync()");
+			return portfolioClient.getPortfolioAsync(owner, true);
+		});
+
+		Map<String, Double> totals = new HashMap<>();
+		for (int index = 0; index < ownerList.size(); index++) {
+			String owner = ownerList.get(index);
+			results.put(owner, RETURNS_ERROR); //replaced below by the returns, if they can be gotten
+			try {
+				Portfolio portfolio = await(portfolioStages.get(index));
+				if (portfolio == null) continue;
+
+				CachedReturns cached = (returnsCache != null) ? returnsCache.get(owner) : null;
+				if ((cached != null) && (Double.compare(cached.total, portfolio.getTotal()) == 0)) {
+					results.put(owner, cached.returns);
+				} else {
+					totals.put(owner, portfolio.getTotal());
+				}
+			} catch (Throwable t) {
+				logException(t);
+			}
+		}
+
+		List<String> uncached = new ArrayList<>(totals.keySet());
+		Map<String, Long> versions = new HashMap<>();
+		if (returnsCache != null) for (String owner : uncached) versions.put(owner, returnsCache.version(owner));
+		List<CompletionStage<String>> returnsStages = callConcurrently(uncached, owner -> {
+			logger.fine("Calling TradeHistoryClient.getReturnsAsync()");
+			return tradeHistoryClient.getReturnsAsync(owner, totals.get(owner));
+		});
+
+		for (int index = 0; index < uncached.size(); index++) {
+			String owner = uncached.get(index);
+			try {
+				String returns = await(returnsStages.get(index));
+				if (returns == null) continue;
+
+				results.put(owner, returns);
+				remember(lastKnownReturns, owner, returns);
+				if (returnsCache != null) returnsCache.putIfCurrent(owner, new CachedReturns(totals.get(owner), returns), versions.get(owner));
+			} catch (Throwable t) {
+				String lastKnown = fallback(lastKnownReturns, owner, t);
+				if (lastKnown != null) results.put(owner, lastKnown);
+			}
+		}
+
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning returns for " + ownerList.size() + " owners");
+		return results;
+	}
+
 	@PUT
 	@Path("/{owner}")
-	@Produces(MediaType.APPLICATION_JSON)
+	@Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR+";qs=0.5"})
 //	@RolesAllowed({"StockTrader"}) //Couldn't get this to work; had to do it through the web.xml instead :(
 	public Broker updateBroker(@PathParam("owner") String owner, @QueryParam("symbol") String symbol, @QueryParam("shares") int shares, @Context HttpServletRequest request) {
 		Broker broker = null;
@@ -457,12 +1056,11 @@ public class BrokerService extends Application {
 		double commission = 0.0;
 		String accountID = null;
 		if (useAccount) try {
-			logger.fine("Calling PortfolioClient.getPortfolio() to get accountID in updateBroker()");
-			portfolio = portfolioClient.getPortfolio(owner, false); //throws a 404 if it doesn't exist
-			accountID = portfolio.getAccountID();
+			accountID = getAccountID(owner);
 
 			logger.fine("Calling AccountClient.getAccount() to get commission in updateBroker()");
-			account = accountClient.getAccount(accountID, DONT_RECALCULATE);
+			account = getAccountBeforeTrade(owner, accountID);
+			if (account.getId() != null) accountID = account.getId(); //differs if the indexed accountID was stale
 			commission = account.getNextCommission();
 		} catch (Throwable t) {
 			logException(t);
@@ -472,49 +1070,131 @@ public class BrokerService extends Application {
 		portfolio = portfolioClient.updatePortfolio(owner, symbol, shares, commission);
 
 		String answer = "broker";
-		if (portfolio!=null) {
-			double total = portfolio.getTotal();
-			account = null;
-			if (useAccount) try {
-				logger.fine("Calling AccountClient.updateAccount()");
-				account = accountClient.updateAccount(accountID, total);
-			} catch (Throwable t) {
-				logException(t);
-			}
-			broker = new Broker(portfolio, account);
+		if ((portfolio!=null) && enqueueUpdates(owner, accountID, portfolio.getTotal(), portfolio.getLastTrade(), request)) {
+			broker = new Broker(portfolio, account); //the account as of before the trade, since the outbox updates it later
+		} else if (portfolio!=null) {
+			CompletionStage<Account> accountStage = updateAccountAsync(owner, accountID, portfolio.getTotal());
 
-			CashAccount cashAccount = null;
+			CompletionStage<CashAccount> cashAccountStage = null;
 			if (useCashAccount) {
 				double lastTrade = portfolio.getLastTrade();
 				if (lastTrade == 0) {
 					logger.warning("Trade amount was zero - skipping calling CashAccount");
-				} else try {
-					if (lastTrade > 0) {
-						logger.fine("Calling CashAccountClient.debit()");
-						cashAccount = cashAccountClient.debit(owner, lastTrade);
-					} else {
-						logger.fine("Calling CashAccountClient.credit()");
-						cashAccount = cashAccountClient.credit(owner, Math.abs(lastTrade));
-					}
-					if (cashAccount != null) {
-						broker.setCashAccountBalance(cashAccount.getBalance());
-						broker.setCashAccountCurrency(cashAccount.getCurrency());
-					}
-				} catch (Throwable t) {
-					logException(t);
+				} else {
+					cashAccountStage = settleCashAccountAsync(owner, lastTrade);
 				}
 			}
+
+			broker = joinUpdates(owner, portfolio, accountStage, cashAccountStage);
 		} else {
 			answer = "null";
 		}
-		logger.fine("Returning "+answer);
+		invalidateCachedBroker(owner);
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning "+answer);
+
+		return broker;
+	}
+
+	/** Applies many trades for one owner in a single request, such as when rebalancing a portfolio.  The
+	 *  accountID and commission are looked up once, the Portfolio updates are issued concurrently, and then the
+	 *  Account is updated once with the final total, and the cash account is debited or credited once with the net
+	 *  amount of all the trades.  Multiple trades of the same symbol are combined into one.
+	 */
+	@PUT
+	@Path("/{owner}/trades")
+	@Consumes({MediaType.APPLICATION_JSON, APPLICATION_CBOR})
+	@Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR+";qs=0.5"})
+//	@RolesAllowed({"StockTrader"}) //Couldn't get this to work; had to do it through the web.xml instead :(
+	public Broker updateBrokerBulk(@PathParam("owner") String owner, List<Trade> trades, @Context HttpServletRequest request) {
+		if ((trades == null) || trades.isEmpty()) throw new BadRequestException("No trades specified for "+owner);
+
+		Map<String, Integer> sharesBySymbol = new LinkedHashMap<>();
+		for (Trade trade : trades) {
+			if ((trade == null) || (trade.getSymbol() == null)) throw new BadRequestException("Trade without a symbol for "+owner);
+			sharesBySymbol.merge(trade.getSymbol(), trade.getShares(), Integer::sum);
+		}
+		sharesBySymbol.values().removeIf(shares -> shares == 0);
+		if (sharesBySymbol.isEmpty()) return loadBroker(owner); //the trades cancelled each other out
+
+		Broker broker = null;
+		Account account = null;
+		Portfolio portfolio = null;
+
+		double commission = 0.0;
+		String accountID = null;
+		if (useAccount) try {
+			accountID = getAccountID(owner);
+
+			logger.fine("Calling AccountClient.getAccount() to get commission in updateBrokerBulk()");
+			account = getAccountBeforeTrade(owner, accountID);
+			if (account.getId() != null) accountID = account.getId(); //differs if the indexed accountID was stale
+			commission = account.getNextCommission();
+		} catch (Throwable t) {
+			logException(t);
+		}
+
+		//All but the last trade are issued at once.  The last is issued after they've all completed, so that the
+		//total it returns reflects every trade, and there's no need to get the portfolio again afterwards.
+		List<String> symbols = new ArrayList<>(sharesBySymbol.keySet());
+		String lastSymbol = symbols.remove(symbols.size()-1);
+		List<CompletionStage<Portfolio>> pending = new ArrayList<>(symbols.size());
+		for (String symbol : symbols) {
+			logger.fine("Calling PortfolioClient.updatePortfolioAsync()");
+			pending.add(portfolioClient.updatePortfolioAsync(owner, symbol, sharesBySymbol.get(symbol), commission));
+		}
+
+		double netTrade = 0.0;
+		RuntimeException failure = null;
+		for (CompletionStage<Portfolio> stage : pending) try {
+			Portfolio updated = await(stage);
+			if (updated != null) netTrade += updated.getLastTrade();
+		} catch (RuntimeException e) {
+			if (failure == null) failure = e; else failure.addSuppressed(e);
+		}
+
+		portfolio = null;
+		if (failure == null) try {
+			logger.fine("Calling PortfolioClient.updatePortfolio()");
+			portfolio = portfolioClient.updatePortfolio(owner, lastSymbol, sharesBySymbol.get(lastSymbol), commission);
+			if (portfolio != null) netTrade += portfolio.getLastTrade();
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		if (failure != null) {
+			//some of the trades may still have gone through, so settle those before reporting the failure
+			logger.warning("Not all trades succeeded for "+owner+", so settling the ones that did");
+			portfolio = portfolioClient.getPortfolio(owner, false);
+		}
+
+		String answer = "broker";
+		if ((portfolio!=null) && enqueueUpdates(owner, accountID, portfolio.getTotal(), netTrade, request)) {
+			broker = new Broker(portfolio, account); //the account as of before the trades, since the outbox updates it later
+		} else if (portfolio!=null) {
+			CompletionStage<Account> accountStage = updateAccountAsync(owner, accountID, portfolio.getTotal());
+
+			CompletionStage<CashAccount> cashAccountStage = null;
+			if (useCashAccount) {
+				if (netTrade == 0) {
+					logger.warning("Net trade amount was zero - skipping calling CashAccount");
+				} else {
+					cashAccountStage = settleCashAccountAsync(owner, netTrade);
+				}
+			}
+
+			broker = joinUpdates(owner, portfolio, accountStage, cashAccountStage);
+		} else {
+			answer = "null";
+		}
+		invalidateCachedBroker(owner);
+		if (failure != null) throw failure;
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning "+answer);
 
 		return broker;
 	}
 
 	@DELETE
 	@Path("/{owner}")
-	@Produces(MediaType.APPLICATION_JSON)
+	@Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR+";qs=0.5"})
 //	@RolesAllowed({"StockTrader"}) //Couldn't get this to work; had to do it through the web.xml instead :(
 	public Broker deleteBroker(@PathParam("owner") String owner, @Context HttpServletRequest request) {
 		Broker broker = null;
@@ -522,34 +1202,41 @@ public class BrokerService extends Application {
 
 		logger.fine("Calling PortfolioClient.deletePortfolio()");
 		portfolio = portfolioClient.deletePortfolio(owner);
+		if (accountIndex != null) accountIndex.remove(owner);
+		if (commissionCache != null) commissionCache.invalidate(owner);
 
 		String answer = "broker";
 		if (portfolio!=null) {
-			Account account = null;
+			//the account and cash account are independent of each other, so are deleted at the same time
+			CompletionStage<Account> accountStage = null;
 			if (useAccount) try {
 				String accountID = portfolio.getAccountID();
-				logger.fine("Calling AccountClient.deleteAccount()");
-				account = accountClient.deleteAccount(accountID);
+				logger.fine("Calling AccountClient.deleteAccountAsync()");
+				accountStage = accountClient.deleteAccountAsync(accountID);
 			} catch (Throwable t) {
 				logException(t);
 			}
-			broker = new Broker(portfolio, account);
 
-			CashAccount cashAccount = null;
+			CompletionStage<CashAccount> cashAccountStage = null;
 			if (useCashAccount) try {
-				logger.fine("Calling CashAccountClient.deleteCashAccount()");
-				cashAccount = cashAccountClient.deleteCashAccount(owner);
-				if (cashAccount != null) {
-					broker.setCashAccountBalance(cashAccount.getBalance());
-					broker.setCashAccountCurrency(cashAccount.getCurrency());
-				}
+				logger.fine("Calling CashAccountClient.deleteCashAccountAsync()");
+				cashAccountStage = cashAccountClient.deleteCashAccountAsync(owner);
 			} catch (Throwable t) {
 				logException(t);
-			}	
+			}
+
+			broker = new Broker(portfolio, awaitOptional(accountStage));
+			CashAccount cashAccount = awaitOptional(cashAccountStage);
+			if (cashAccount != null) {
+				broker.setCashAccountBalance(cashAccount.getBalance());
+				broker.setCashAccountCurrency(cashAccount.getCurrency());
+			}
 		} else {
 			answer = "null";
 		}
-		logger.fine("Returning "+answer);
+		invalidateCachedBroker(owner);
+		forgetLastKnown(owner);
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning "+answer);
 
 		return broker; //maybe this method should return void instead?
 	}
@@ -567,7 +1254,7 @@ public class BrokerService extends Application {
 
 		String answer = "feedback";
 		if (feedback==null) answer = "null";
-		logger.fine("Returning "+answer);
+		if (logger.isLoggable(Level.FINE)) logger.fine("Returning "+answer);
 
 		return feedback;
 	}
@@ -596,14 +1283,202 @@ public class BrokerService extends Application {
 		return brokers;
 	}
 
-	static void logException(Throwable t) {
-		logger.warning(t.getClass().getName()+": "+t.getMessage());
+	/** Gets the accountID of this owner from the index, else from the Portfolio microservice (adding it to the index) */
+	private String getAccountID(String owner) {
+		String accountID = (accountIndex != null) ? accountIndex.get(owner) : null;
+		if (accountID == null) {
+			logger.fine("Calling PortfolioClient.getPortfolio() to get accountID");
+			Portfolio portfolio = portfolioClient.getPortfolio(owner, false); //throws a 404 if it doesn't exist
+			accountID = portfolio.getAccountID();
+			if (accountIndex != null) accountIndex.put(owner, accountID);
+		}
+		return accountID;
+	}
+
+	/** Gets the account of this owner (for its commission) before a trade, from the commission cache if it has a
+	 *  current one.  If the account isn't found, the accountID may have come from the index and be stale (such as if
+	 *  the broker was deleted and created again via another replica), so it's removed from the index and looked up
+	 *  again.
+	 */
+	private Account getAccountBeforeTrade(String owner, String accountID) {
+		Account account = (commissionCache != null) ? commissionCache.get(owner) : null;
+		if (account != null) {
+			logger.fine("Using the cached account, so skipping AccountClient.getAccount()");
+			return account;
+		}
+
+		long version = (commissionCache != null) ? commissionCache.version(owner) : 0;
+		try {
+			account = accountClient.getAccount(accountID, DONT_RECALCULATE);
+		} catch (WebApplicationException e) {
+			if ((accountIndex == null) || (e.getResponse().getStatus() != 404)) throw e;
+			accountIndex.remove(owner);
+			account = accountClient.getAccount(getAccountID(owner), DONT_RECALCULATE);
+		}
+		if (commissionCache != null) commissionCache.putIfCurrent(owner, account, version);
+		return account;
+	}
+
+	/** If the outbox is enabled, journals the Account and CashAccount updates that follow a trade, for the outbox to
+	 *  deliver in the background.  Returns false if they should be made synchronously instead.
+	 */
+	private boolean enqueueUpdates(String owner, String accountID, double total, double amount, HttpServletRequest request) {
+		if (outbox == null) return false;
+
+		List<Outbox.Entry> entries = new ArrayList<>(2);
+		if (useAccount && (accountID != null)) {
+			Outbox.Entry update = new Outbox.Entry(Outbox.ACCOUNT_UPDATE, owner, accountID, total);
+			if (commissionCache != null) update.cacheVersion = commissionCache.invalidate(owner); //until it's delivered
+			entries.add(update);
+		}
+		if (useCashAccount && (amount != 0)) entries.add(new Outbox.Entry((amount > 0) ? Outbox.CASH_DEBIT : Outbox.CASH_CREDIT, owner, null, Math.abs(amount)));
+		try {
+			outbox.enqueue(request.getHeader("Authorization"), entries);
+			return true;
+		} catch (IOException e) {
+			logException(e);
+			return false;
+		}
+	}
+
+	/** Called by the outbox, from its own threads, to make the calls it has journaled */
+	private void deliver(Outbox.Entry entry, String authorization) {
+		if (entry.type == Outbox.ACCOUNT_UPDATE) {
+			//send the portfolio's current total rather than the journaled one, which a trade through another broker
+			//replica (or a later one through this) may have superseded by now
+			logger.fine("Calling PortfolioClient.getPortfolio() from the outbox");
+			Portfolio portfolio = portfolioClient.getPortfolio(entry.owner, true, authorization);
+			double total = (portfolio != null) ? portfolio.getTotal() : entry.amount;
+			logger.fine("Calling AccountClient.updateAccount() from the outbox");
+			Account account = accountClient.updateAccount(entry.accountID, total, authorization);
+			remember(lastKnownAccounts, entry.owner, account);
+			//only if no other write for this owner has started since this one was enqueued
+			if ((commissionCache != null) && (entry.cacheVersion != 0)) commissionCache.putIfCurrent(entry.owner, account, entry.cacheVersion);
+		} else if (entry.type == Outbox.CASH_DEBIT) {
+			logger.fine("Calling CashAccountClient.debit() from the outbox");
+			remember(lastKnownCashAccounts, entry.owner, cashAccountClient.debit(entry.owner, entry.amount, authorization));
+		} else {
+			logger.fine("Calling CashAccountClient.credit() from the outbox");
+			remember(lastKnownCashAccounts, entry.owner, cashAccountClient.credit(entry.owner, entry.amount, authorization));
+		}
+		invalidateCachedBroker(entry.owner);
+	}
 
-		//only log the stack trace if the level has been set to at least INFO
-		if (logger.isLoggable(Level.INFO)) {
-			StringWriter writer = new StringWriter();
-			t.printStackTrace(new PrintWriter(writer));
-			logger.info(writer.toString());
+	/** Starts updating the account with the new portfolio total, or returns null if there's no account to update.
+	 *  The updated account is cached for the next trade, unless another write for this owner has started since.
+	 */
+	private CompletionStage<Account> updateAccountAsync(String owner, String accountID, double total) {
+		if (useAccount) try {
+			long version = (commissionCache != null) ? commissionCache.invalidate(owner) : 0;
+			logger.fine("Calling AccountClient.updateAccountAsync()");
+			CompletionStage<Account> stage = accountClient.updateAccountAsync(accountID, total);
+			if (commissionCache != null) stage = stage.thenApply(account -> {
+				commissionCache.putIfCurrent(owner, account, version);
+				return account;
+			});
+			return stage;
+		} catch (Throwable t) {
+			logException(t);
 		}
+		return null;
+	}
+
+	/** Starts debiting (for a purchase) or crediting (for a sale) the cash account by the amount of a trade */
+	private CompletionStage<CashAccount> settleCashAccountAsync(String owner, double amount) {
+		try {
+			if (amount > 0) {
+				logger.fine("Calling CashAccountClient.debitAsync()");
+				return cashAccountClient.debitAsync(owner, amount);
+			} else {
+				logger.fine("Calling CashAccountClient.creditAsync()");
+				return cashAccountClient.creditAsync(owner, Math.abs(amount));
+			}
+		} catch (Throwable t) {
+			logException(t);
+		}
+		return null;
+	}
+
+	/** Waits for the account and cash account updates that follow a trade (which run at the same time, since
+	 *  neither depends on the other), and combines them with the updated portfolio into a broker.
+	 */
+	private Broker joinUpdates(String owner, Portfolio portfolio, CompletionStage<Account> accountStage, CompletionStage<CashAccount> cashAccountStage) {
+		Account account = awaitOptional(accountStage);
+		remember(lastKnownAccounts, owner, account);
+		Broker broker = new Broker(portfolio, account);
+
+		CashAccount cashAccount = awaitOptional(cashAccountStage);
+		remember(lastKnownCashAccounts, owner, cashAccount);
+		if (cashAccount != null) {
+			broker.setCashAccountBalance(cashAccount.getBalance());
+			broker.setCashAccountCurrency(cashAccount.getCurrency());
+		}
+		return broker;
+	}
+
+	/** Called after each write, so the next read of this owner goes back to the downstream microservices */
+	private void invalidateCachedBroker(String owner) {
+		if (brokerCache != null) brokerCache.invalidate(owner);
+		if (returnsCache != null) returnsCache.invalidate(owner);
+		inFlightLoads.remove(owner); //a read in progress may predate this write, so later reads mustn't join it
+	}
+
+	/** Remembers a good value from one of the optional microservices, to fall back to if it becomes unavailable */
+	private static <T> void remember(OwnerCache<T> lastKnown, String owner, T value) {
+		if ((lastKnown != null) && (owner != null) && (value != null)) lastKnown.put(owner, value);
+	}
+
+	/** Logs the failure of an optional microservice, returning the last known good value for this owner if the
+	 *  fault tolerance layer gave up on that microservice (open circuit, full bulkhead or timeout), else null.
+	 *  Errors returned by the microservice itself (such as a 404) don't fall back, since they aren't an outage.
+	 */
+	private static <T> T fallback(OwnerCache<T> lastKnown, String owner, Throwable t) {
+		logException(t);
+		if (!isFallbackFor(t, lastKnown)) return null;
+
+		T value = lastKnown.get(owner);
+		if (value != null) logger.warning("Falling back to the last known good value for "+owner);
+		return value;
+	}
+
+	private static boolean isFallbackFor(Throwable t, OwnerCache<?> lastKnown) {
+		return (lastKnown != null) && (t instanceof FaultToleranceException);
+	}
+
+	private void forgetLastKnown(String owner) {
+		if (lastKnownAccounts != null) lastKnownAccounts.invalidate(owner);
+		if (lastKnownCashAccounts != null) lastKnownCashAccounts.invalidate(owner);
+		if (lastKnownReturns != null) lastKnownReturns.invalidate(owner);
+	}
+
+	/** Waits for an asynchronous mpRestClient call, rethrowing whatever it failed with (such as the
+	 *  WebApplicationException for a 404) rather than the CompletionException wrapping it.
+	 */
+	static <T> T await(CompletionStage<T> stage) {
+		try {
+			return stage.toCompletableFuture().join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+
+	/** Waits for a call to one of the optional microservices (if one was started), logging its exception and
+	 *  returning null if it failed
+	 */
+	private static <T> T awaitOptional(CompletionStage<T> stage) {
+		if (stage != null) try {
+			return await(stage);
+		} catch (Throwable t) {
+			logException(t);
+		}
+		return null;
+	}
+
+	/** Hands the exception to a background writer, which logs each distinct exception once a minute at most */
+	static void logException(Throwable t) {
+		exceptionLogger.log(t);
 	}
 }
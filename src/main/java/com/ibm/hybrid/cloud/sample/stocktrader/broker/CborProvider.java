@@ -0,0 +1,86 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+//JSON-P 2.1
+import jakarta.json.JsonObjectBuilder;
+
+//JAX-RS 3.1
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+//Jackson
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsonp.JSONPModule;
+
+/** Reads and writes CBOR (RFC 8949), a binary equivalent of JSON, for clients that send an Accept (or Content-Type)
+ *  header of application/cbor.  The fields are the same as in the JSON produced by JSON-B: the bean properties of
+ *  the POJOs in the json package, with nulls left out, and the stocks JsonObject written as a nested map.
+ */
+@Provider
+@Produces(CborProvider.APPLICATION_CBOR)
+@Consumes(CborProvider.APPLICATION_CBOR)
+public class CborProvider implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
+	public static final String APPLICATION_CBOR = "application/cbor";
+
+	static final ObjectMapper mapper = CBORMapper.builder() //thread safe, so shared by all requests
+		.addModule(new JSONPModule())
+		.serializationInclusion(JsonInclude.Include.NON_NULL)
+		.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+		.disable(StreamWriteFeature.AUTO_CLOSE_TARGET) //JAX-RS owns the streams
+		.disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+		.withConfigOverride(JsonObjectBuilder.class, override -> override.setIsIgnoredType(true)) //like @JsonbTransient
+		.build();
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return true;
+	}
+
+	@Override
+	public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, Object> headers, OutputStream output) throws IOException {
+		mapper.writerFor(mapper.constructType(genericType)).writeValue(output, value);
+	}
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return true;
+	}
+
+	@Override
+	public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, String> headers, InputStream input) throws IOException {
+		return mapper.readValue(input, mapper.constructType(genericType));
+	}
+}
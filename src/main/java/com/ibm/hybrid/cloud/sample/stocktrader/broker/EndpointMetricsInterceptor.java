@@ -0,0 +1,69 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//CDI 4.0
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+//JAX-RS 3.1
+import jakarta.ws.rs.Path;
+
+//mpMetrics 5.1
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+/** Exports a "requests.inFlight" gauge for each endpoint of the BrokerService, tagged by the name of the resource
+ *  method, counting the requests currently being handled by it.  For the streaming endpoints, that's until the
+ *  response starts being written, rather than until it's done.
+ */
+@EndpointMetrics
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class EndpointMetricsInterceptor {
+	static final String GAUGE_NAME = "requests.inFlight";
+
+	//static, since the gauges are registered just once, no matter how many instances of the interceptor there are
+	private static final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+	@Inject MetricRegistry metricRegistry;
+
+	@AroundInvoke
+	public Object track(InvocationContext context) throws Exception {
+		if (!context.getMethod().isAnnotationPresent(Path.class)) return context.proceed(); //not an endpoint
+
+		AtomicInteger count = inFlight.computeIfAbsent(context.getMethod().getName(), endpoint ->
+			register(endpoint, new AtomicInteger()));
+		count.incrementAndGet();
+		try {
+			return context.proceed();
+		} finally {
+			count.decrementAndGet();
+		}
+	}
+
+	private AtomicInteger register(String endpoint, AtomicInteger count) {
+		metricRegistry.gauge(GAUGE_NAME, count, AtomicInteger::get, new Tag("endpoint", endpoint));
+		return count;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Logs exceptions from a background thread, so that request threads don't pay for formatting stack traces (which
+ *  matters most during an outage, when every request fails the same way).  Only the first occurrence of each distinct
+ *  exception (by class and message) in an interval is logged; the rest are just counted, and summarized at the end of
+ *  the interval.  Records that don't fit in the bounded queue are dropped, and counted likewise.
+ */
+class ExceptionLogger implements Runnable {
+	private static final int MAX_DISTINCT = 1000; //per interval, beyond which further distinct exceptions are dropped
+
+	private final Logger logger;
+	private final long intervalNanos;
+	private final BlockingQueue<Throwable> queue;
+	private final AtomicReference<ConcurrentHashMap<String, AtomicLong>> counts = new AtomicReference<>(new ConcurrentHashMap<>());
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile Thread writer = null;
+	private volatile boolean closed = false;
+
+	ExceptionLogger(Logger logger, int capacity, long intervalMillis) {
+		this.logger = logger;
+		this.queue = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalMillis, 1));
+	}
+
+	/** Never blocks; costs nothing beyond a level check if WARNING is disabled */
+	void log(Throwable t) {
+		if ((t == null) || !logger.isLoggable(Level.WARNING)) return;
+
+		ConcurrentHashMap<String, AtomicLong> current = counts.get();
+		String key = t.getClass().getName()+": "+t.getMessage();
+		AtomicLong count = current.get(key);
+		if (count == null) {
+			if (current.size() >= MAX_DISTINCT) {
+				dropped.incrementAndGet();
+				return;
+			}
+			AtomicLong first = new AtomicLong();
+			count = current.putIfAbsent(key, first);
+			if (count == null) count = first;
+		}
+		if (count.getAndIncrement() > 0) return; //already logged this interval
+
+		if (closed) { //no writer thread any more, so log it here
+			write(t);
+		} else if (queue.offer(t)) {
+			startWriter();
+		} else {
+			dropped.incrementAndGet();
+		}
+	}
+
+	private void startWriter() {
+		if (writer == null) synchronized (this) {
+			if ((writer == null) && !closed) {
+				Thread thread = new Thread(this, "broker-exception-logger");
+				thread.setDaemon(true);
+				thread.start();
+				writer = thread;
+			}
+		}
+	}
+
+	/** Stops the writer thread, once it has logged what's queued, so it doesn't outlive the application */
+	void shutdown() {
+		Thread thread;
+		synchronized (this) {
+			closed = true;
+			thread = writer;
+		}
+		if (thread == null) return;
+		thread.interrupt();
+		try {
+			thread.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		long nextSummary = System.nanoTime() + intervalNanos;
+		while (true) {
+			try {
+				Throwable t = queue.poll(Math.max(nextSummary - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+				if (t != null) write(t);
+			} catch (InterruptedException e) {
+				for (Throwable t = queue.poll(); t != null; t = queue.poll()) write(t);
+				summarize();
+				return;
+			} catch (RuntimeException e) { //keep the writer alive whatever a handler does
+				logger.log(Level.WARNING, "Unable to log an exception", e);
+			}
+
+			if (System.nanoTime() - nextSummary >= 0) {
+				summarize();
+				nextSummary = System.nanoTime() + intervalNanos;
+			}
+		}
+	}
+
+	private void write(Throwable t) {
+		logger.warning(t.getClass().getName()+": "+t.getMessage());
+
+		//only log the stack trace if the level has been set to at least INFO
+		if (logger.isLoggable(Level.INFO)) {
+			StringWriter writer = new StringWriter();
+			t.printStackTrace(new PrintWriter(writer));
+			logger.info(writer.toString());
+		}
+	}
+
+	private void summarize() {
+		long seconds = TimeUnit.NANOSECONDS.toSeconds(intervalNanos);
+		for (Map.Entry<String, AtomicLong> entry : counts.getAndSet(new ConcurrentHashMap<>()).entrySet()) {
+			long repeats = entry.getValue().get() - 1;
+			if (repeats > 0) logger.warning(entry.getKey()+" occurred "+repeats+" more times in the last "+seconds+" seconds");
+		}
+		long drops = dropped.getAndSet(0);
+		if (drops > 0) logger.warning(drops+" exceptions were not logged in the last "+seconds+" seconds, due to the volume");
+	}
+}
@@ -0,0 +1,561 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//JAX-RS
+import jakarta.ws.rs.WebApplicationException;
+
+//mpFaultTolerance 4.0
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+
+//mpMetrics 5.1
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/** Durable queue of the Account and CashAccount updates that follow a trade, so that the trade can return as soon as
+ *  the Portfolio has been updated.  Entries are appended to memory-mapped journal segments, and only handed to the
+ *  background workers once forced to disk; concurrent trades share a single force (group commit).  There's a worker
+ *  per microservice, each delivering its entries in order, retrying with exponential backoff for as long as the
+ *  microservice is unavailable.  Delivered entries are marked done in the journal, and any that weren't are replayed
+ *  when the broker restarts.
+ *
+ *  Account updates set the account's total to the portfolio's at the time of delivery (see BrokerService.deliver), so
+ *  can safely be made more than once: they're retried whatever they failed with, and an update made just before a
+ *  crash may be made again after the restart.  Debits and credits aren't
+ *  idempotent, so are marked attempted in the journal (and forced to disk) before being made, and are only retried
+ *  if they certainly never reached the CashAccount microservice (connection refused, or rejected by the circuit
+ *  breaker or bulkhead).  Any other failure (such as a timeout or a 5xx), or finding one marked attempted but not done
+ *  when replaying, means it may or may not have been made, so it's logged and counted as unknown rather than risking
+ *  making it twice.
+ *
+ *  The Authorization header of the trade is needed to call the microservices, but is only kept in memory, never
+ *  journaled.  An entry is only ever sent with a token from a trade of the same owner: entries replayed after a
+ *  restart, or whose token was rejected (401 or 403), are parked until the next trade of that owner, then sent (in
+ *  order, ahead of that trade's own entries) with its token.  Later entries of a parked owner are parked behind them.
+ */
+class Outbox {
+	private static Logger logger = Logger.getLogger(Outbox.class.getName());
+
+	static final byte ACCOUNT_UPDATE = 1;
+	static final byte CASH_DEBIT = 2;
+	static final byte CASH_CREDIT = 3;
+	private static final byte DONE = 4;
+	private static final byte ATTEMPTED = 5;
+
+	private static final int HEADER_BYTES = 8; //length and CRC-32 of each record
+	private static final String PREFIX = "outbox-";
+	private static final String SUFFIX = ".log";
+	private static final long MIN_BACKOFF_MILLIS = 100;
+
+	/** Makes the downstream call for an entry, throwing whatever the call failed with */
+	interface Delivery {
+		void deliver(Entry entry, String authorization);
+	}
+
+	/** An Account update (to a new portfolio total) or a CashAccount debit or credit, for one owner */
+	static final class Entry {
+		final byte type;
+		final String owner;
+		final String accountID; //only for ACCOUNT_UPDATE
+		final double amount;
+		long cacheVersion = 0; //of the owner's cached account when enqueued; not journaled, so 0 once replayed
+		private long id;
+		private long sequence; //of its record in the journal, so its worker can wait for that to be on disk
+		private Segment segment;
+		private volatile String authorization;
+		private boolean attempted = false; //whether marked attempted in the journal
+
+		/** Whether making this more than once has the same effect as making it once */
+		boolean idempotent() {
+			return type == ACCOUNT_UPDATE;
+		}
+
+		Entry(byte type, String owner, String accountID, double amount) {
+			this.type = type;
+			this.owner = owner;
+			this.accountID = accountID;
+			this.amount = amount;
+		}
+
+		public String toString() {
+			switch (type) {
+				case ACCOUNT_UPDATE: return "account update of "+owner+" to a total of "+amount;
+				case CASH_DEBIT: return "cash account debit of "+owner+" by "+amount;
+				default: return "cash account credit of "+owner+" by "+amount;
+			}
+		}
+	}
+
+	private static final class Segment {
+		private final long number;
+		private final Path path;
+		private final MappedByteBuffer buffer; //null for segments replayed at startup, which are only read
+		private int pending = 0; //entries not yet delivered, guarded by the Outbox
+
+		private Segment(long number, Path path, MappedByteBuffer buffer) {
+			this.number = number;
+			this.path = path;
+			this.buffer = buffer;
+		}
+	}
+
+	private final Path directory;
+	private final int segmentBytes;
+	private final long maxBackoffMillis;
+	private final Delivery delivery;
+	private final Consumer<Throwable> errors;
+	private final Lane accountLane = new Lane("account");
+	private final Lane cashAccountLane = new Lane("cashAccount");
+	private final AtomicLong pending = new AtomicLong();
+	private final Counter delivered;
+	private final Counter retries;
+	private final Counter dropped;
+	private final Counter unknown;
+	private volatile boolean closed = false;
+
+	//guarded by this
+	private final ArrayDeque<Segment> segments = new ArrayDeque<>(); //oldest first; the last is the one appended to
+	private long nextSegment = 0;
+	private long nextID = 0;
+	private long appended = 0; //records appended
+	private long durable = 0;  //records known to be on disk
+	private boolean forcing = false;
+
+	Outbox(Path directory, int segmentBytes, long maxBackoffMillis, Delivery delivery, Consumer<Throwable> errors, MetricRegistry registry) throws IOException {
+		this.directory = directory;
+		this.segmentBytes = Math.max(segmentBytes, 4096);
+		this.maxBackoffMillis = Math.max(maxBackoffMillis, MIN_BACKOFF_MILLIS);
+		this.delivery = delivery;
+		this.errors = errors;
+		delivered = registry.counter("outbox.delivered");
+		retries = registry.counter("outbox.retries");
+		dropped = registry.counter("outbox.dropped");
+		unknown = registry.counter("outbox.unknown");
+		registry.gauge("outbox.pending", pending, AtomicLong::get);
+
+		Files.createDirectories(directory);
+		List<Entry> replayed = replay();
+		synchronized (this) {
+			roll();
+		}
+		for (Entry entry : replayed) {
+			if (entry.attempted) { //was being made when the broker stopped, so may or may not have been
+				giveUp(entry, "was interrupted by the broker stopping");
+			} else {
+				laneFor(entry).park(entry); //until a trade of this owner brings a token to send it with
+			}
+		}
+		if (!replayed.isEmpty()) logger.info("Replaying "+replayed.size()+" undelivered entries from "+directory+", as their owners next trade");
+
+		accountLane.thread.start();
+		cashAccountLane.thread.start();
+	}
+
+	/** Journals the entries and hands them to the workers, returning once they're on disk.  Entries are given their
+	 *  ids, appended and queued under the same lock, so each worker delivers them in journal order (once on disk).
+	 *  An IOException means nothing was journaled or queued, so the caller should make the updates itself.
+	 */
+	void enqueue(String authorization, List<Entry> entries) throws IOException {
+		if (entries.isEmpty()) return;
+
+		long sequence;
+		synchronized (this) {
+			List<byte[]> records = new ArrayList<>(entries.size());
+			int size = 0;
+			long id = nextID;
+			for (Entry entry : entries) {
+				entry.id = id++;
+				entry.authorization = authorization;
+				byte[] record = encode(entry);
+				records.add(record);
+				size += HEADER_BYTES + record.length;
+			}
+			if (size > segmentBytes) throw new IOException("Entries too large for an outbox segment of "+segmentBytes+" bytes");
+			if (segments.getLast().buffer.remaining() < size) roll(); //all in one segment, so none can fail to fit
+			nextID = id;
+
+			Segment segment = segments.getLast();
+			for (int index = 0; index < records.size(); index++) {
+				Entry entry = entries.get(index);
+				append(segment, records.get(index));
+				entry.segment = segment;
+				entry.sequence = appended;
+				segment.pending++;
+				laneFor(entry).queue.add(entry);
+			}
+			pending.addAndGet(entries.size());
+			sequence = appended;
+		}
+
+		try {
+			awaitDurable(sequence);
+		} catch (IOException e) { //already queued, and the worker will force them before delivering, so don't fail
+			logger.warning("Unable to force the outbox to disk, so the latest entries may be lost in a crash: "+e.getMessage());
+		}
+	}
+
+	void close() {
+		closed = true;
+		accountLane.thread.interrupt();
+		cashAccountLane.thread.interrupt();
+		synchronized (this) {
+			segments.getLast().buffer.force();
+		}
+	}
+
+	/** The number of entries not yet delivered (or given up on) */
+	long pending() {
+		return pending.get();
+	}
+
+	private Lane laneFor(Entry entry) {
+		return (entry.type == ACCOUNT_UPDATE) ? accountLane : cashAccountLane;
+	}
+
+	private void append(Segment segment, byte[] record) {
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		segment.buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+		appended++;
+	}
+
+	/** Group commit: the first thread to get here forces everything appended so far, and the rest wait for it (then
+	 *  either find their records were covered, or take their turn forcing the ones appended in the meantime).
+	 */
+	private void awaitDurable(long sequence) throws IOException {
+		MappedByteBuffer buffer;
+		long target;
+		synchronized (this) {
+			while (forcing && (durable < sequence)) try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the outbox to be forced to disk");
+			}
+			if (durable >= sequence) return;
+			forcing = true;
+			target = appended;
+			buffer = segments.getLast().buffer;
+		}
+
+		boolean forced = false;
+		try {
+			buffer.force();
+			forced = true;
+		} finally {
+			synchronized (this) {
+				forcing = false;
+				if (forced) durable = Math.max(durable, target);
+				notifyAll();
+			}
+		}
+	}
+
+	/** Starts a new segment, after forcing the current one (so everything appended so far is durable) */
+	private void roll() throws IOException {
+		Segment last = segments.peekLast();
+		if ((last != null) && (last.buffer != null)) {
+			last.buffer.force();
+			durable = appended;
+		}
+
+		Path path = directory.resolve(PREFIX+nextSegment+SUFFIX);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			segments.addLast(new Segment(nextSegment, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes)));
+		}
+		nextSegment++;
+		deleteDelivered();
+	}
+
+	/** Marks an entry done, so it isn't replayed.  This isn't forced: if lost in a crash, an account update is made
+	 *  again (which is harmless), and a debit or credit, which was marked attempted, is reported as unknown.
+	 */
+	private void markDone(Entry entry) {
+		pending.decrementAndGet();
+		synchronized (this) {
+			try {
+				appendMarker(DONE, entry.id);
+			} catch (IOException e) {
+				logger.warning("Unable to mark "+entry+" done in the outbox: "+e.getMessage());
+			}
+			entry.segment.pending--;
+			deleteDelivered();
+		}
+	}
+
+	/** Marks an entry that isn't idempotent attempted, returning once that's on disk, before it's first made */
+	private void markAttempted(Entry entry) throws IOException {
+		long sequence;
+		synchronized (this) {
+			appendMarker(ATTEMPTED, entry.id);
+			sequence = appended;
+		}
+		awaitDurable(sequence);
+		entry.attempted = true;
+	}
+
+	private void appendMarker(byte type, long id) throws IOException { //called while synchronized
+		ByteBuffer record = ByteBuffer.allocate(9).put(type).putLong(id);
+		if (segments.getLast().buffer.remaining() < HEADER_BYTES + record.capacity()) roll();
+		append(segments.getLast(), record.array());
+	}
+
+	/** Stops trying to deliver an entry that may or may not have been made, leaving it to be checked by hand */
+	private void giveUp(Entry entry, String reason) {
+		logger.warning("Not retrying the "+entry+" (outbox entry "+entry.id+"), which "+reason+", so may or may not have been made");
+		unknown.inc();
+		markDone(entry);
+	}
+
+	/** Whether a call certainly never reached the microservice, so is safe to retry even if it isn't idempotent */
+	private static boolean neverSent(Throwable t) {
+		if ((t instanceof CircuitBreakerOpenException) || (t instanceof BulkheadException)) return true;
+		for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+			if ((cause instanceof ConnectException) || (cause instanceof UnknownHostException)) return true;
+		}
+		return false;
+	}
+
+	/** Deletes segments whose entries have all been delivered.  Only ever the oldest ones, since later segments hold
+	 *  the done markers for entries in earlier ones, which mustn't be lost while those entries could be replayed.
+	 */
+	private void deleteDelivered() {
+		while ((segments.size() > 1) && (segments.getFirst().pending == 0)) {
+			Segment segment = segments.removeFirst();
+			try {
+				Files.deleteIfExists(segment.path);
+			} catch (IOException e) {
+				logger.warning("Unable to delete outbox segment "+segment.path+": "+e.getMessage());
+			}
+		}
+	}
+
+	/** Reads any segments left by a previous run, returning the entries that weren't marked done, in order */
+	private List<Entry> replay() throws IOException {
+		List<Path> paths;
+		try (Stream<Path> files = Files.list(directory)) {
+			paths = files.filter(path -> segmentNumber(path) >= 0).sorted((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b))).collect(Collectors.toList());
+		}
+
+		Map<Long, Entry> undelivered = new LinkedHashMap<>();
+		Set<Long> attempted = new HashSet<>();
+		long maxID = -1;
+		for (Path path : paths) {
+			Segment segment = new Segment(segmentNumber(path), path, null);
+			segments.addLast(segment);
+			nextSegment = segment.number + 1;
+
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+			while (buffer.remaining() >= HEADER_BYTES) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				if ((length <= 0) || (length > buffer.remaining())) break; //end of the segment (or a torn write)
+
+				byte[] record = new byte[length];
+				buffer.get(record);
+				CRC32 crc = new CRC32();
+				crc.update(record);
+				if ((int) crc.getValue() != checksum) {
+					logger.warning("Ignoring the rest of outbox segment "+path+", which is corrupt");
+					break;
+				}
+
+				Entry entry = decode(record);
+				maxID = Math.max(maxID, entry.id);
+				if (entry.type == DONE) {
+					undelivered.remove(entry.id);
+				} else if (entry.type == ATTEMPTED) {
+					attempted.add(entry.id);
+				} else {
+					entry.segment = segment;
+					undelivered.put(entry.id, entry);
+				}
+			}
+		}
+
+		for (Entry entry : undelivered.values()) {
+			entry.segment.pending++;
+			entry.attempted = attempted.contains(entry.id);
+		}
+		pending.addAndGet(undelivered.size());
+		nextID = maxID + 1;
+		return new ArrayList<>(undelivered.values());
+	}
+
+	private static long segmentNumber(Path path) {
+		String name = path.getFileName().toString();
+		if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) return -1;
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static byte[] encode(Entry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(entry.type);
+		out.writeLong(entry.id);
+		out.writeUTF(entry.owner);
+		out.writeUTF((entry.accountID != null) ? entry.accountID : "");
+		out.writeDouble(entry.amount);
+		return bytes.toByteArray();
+	}
+
+	private static Entry decode(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		byte type = in.readByte();
+		long id = in.readLong();
+		Entry entry = ((type == DONE) || (type == ATTEMPTED)) ? new Entry(type, null, null, 0) : new Entry(type, in.readUTF(), emptyToNull(in.readUTF()), in.readDouble());
+		entry.id = id;
+		return entry;
+	}
+
+	private static String emptyToNull(String value) {
+		return value.isEmpty() ? null : value;
+	}
+
+	/** Delivers the entries for one microservice, in order */
+	private final class Lane implements Runnable {
+		private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+		private final Map<String, List<Entry>> parked = new HashMap<>(); //by owner, in order; only used by the worker
+		private final Thread thread;
+
+		private Lane(String name) {
+			thread = new Thread(this, "broker-outbox-"+name);
+			thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!closed) process(queue.take());
+			} catch (InterruptedException e) {
+				logger.fine("Outbox worker stopped");
+			}
+		}
+
+		/** Called before the worker starts, or by it */
+		private void park(Entry entry) {
+			entry.authorization = null;
+			parked.computeIfAbsent(entry.owner, owner -> new ArrayList<>()).add(entry);
+		}
+
+		/** Delivers the entry, after any parked entries of the same owner, which are sent with its token */
+		private void process(Entry entry) throws InterruptedException {
+			List<Entry> owed = parked.remove(entry.owner);
+			if (owed == null) owed = new ArrayList<>(1);
+			owed.add(entry);
+
+			String authorization = entry.authorization;
+			for (int index = 0; index < owed.size(); index++) {
+				Entry next = owed.get(index);
+				next.authorization = authorization;
+				if ((authorization == null) || !deliver(next)) { //no token of this owner's that works, so wait for one
+					for (Entry rest : owed.subList(index, owed.size())) park(rest);
+					if (logger.isLoggable(Level.FINE)) logger.fine("Parked "+(owed.size() - index)+" entries of "+entry.owner+" until their next trade");
+					return;
+				}
+			}
+		}
+
+		/** Returns false if the token was rejected, else true once the entry is delivered (or dropped or given up on) */
+		private boolean deliver(Entry entry) throws InterruptedException {
+			long backoff = MIN_BACKOFF_MILLIS;
+			while (true) try { //never make an update that could be lost from the journal in a crash
+				awaitDurable(entry.sequence);
+				break;
+			} catch (IOException e) {
+				errors.accept(e);
+				Thread.sleep(backoff);
+				backoff = Math.min(backoff * 2, maxBackoffMillis);
+			}
+
+			backoff = MIN_BACKOFF_MILLIS;
+			while (true) {
+				try {
+					if (!entry.idempotent() && !entry.attempted) markAttempted(entry);
+					delivery.deliver(entry, entry.authorization);
+					delivered.inc();
+					markDone(entry);
+					if (logger.isLoggable(Level.FINE)) logger.fine("Delivered "+entry);
+					return true;
+				} catch (WebApplicationException e) {
+					int status = e.getResponse().getStatus();
+					if ((status == 401) || (status == 403)) { //probably expired, and certainly not made, so retry with a new token
+						return false;
+					} else if ((status >= 400) && (status < 500)) {
+						logger.warning("Dropping "+entry+", which was rejected with status "+status);
+						dropped.inc();
+						markDone(entry);
+						return true;
+					} else if (!entry.idempotent()) {
+						giveUp(entry, "failed with status "+status);
+						return true;
+					}
+					errors.accept(e);
+				} catch (IOException e) { //couldn't mark it attempted, so it hasn't been made
+					errors.accept(e);
+				} catch (RuntimeException e) {
+					if (!entry.idempotent() && !neverSent(e)) {
+						giveUp(entry, "failed with "+e);
+						return true;
+					}
+					errors.accept(e);
+				}
+
+				retries.inc();
+				Thread.sleep(backoff);
+				backoff = Math.min(backoff * 2, maxBackoffMillis);
+			}
+		}
+	}
+}
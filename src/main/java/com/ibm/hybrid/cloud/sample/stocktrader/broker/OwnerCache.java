@@ -0,0 +1,90 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//mpMetrics 5.1
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/** Bounded, time-to-live cache of values keyed by owner.  When full, the least recently used entry is evicted.
+ *  Hit, miss and eviction counts (plus the current size) are exported via mpMetrics, prefixed by the cache name.
+ */
+class OwnerCache<V> {
+	private final int maxSize;
+	private final long ttlNanos;
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter evictions;
+	private final LinkedHashMap<String, Entry<V>> entries;
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expires;
+
+		private Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	OwnerCache(String name, int maxSize, long ttlMillis, MetricRegistry registry) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlMillis * 1_000_000L;
+		hits = registry.counter(name+".hits");
+		misses = registry.counter(name+".misses");
+		evictions = registry.counter(name+".evictions");
+		registry.gauge(name+".size", this, OwnerCache::size);
+
+		entries = new LinkedHashMap<>(16, 0.75f, true) { //access order, so the eldest entry is the least recently used
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+				boolean full = size() > OwnerCache.this.maxSize;
+				if (full) evictions.inc();
+				return full;
+			}
+		};
+	}
+
+	/** Returns the cached value for this owner, or null if there isn't one (or it has expired) */
+	synchronized V get(String owner) {
+		Entry<V> entry = entries.get(owner);
+		if (entry != null) {
+			if (System.nanoTime() - entry.expires < 0) {
+				hits.inc();
+				return entry.value;
+			}
+			entries.remove(owner);
+		}
+		misses.inc();
+		return null;
+	}
+
+	synchronized void put(String owner, V value) {
+		entries.put(owner, new Entry<>(value, System.nanoTime() + ttlNanos));
+	}
+
+	synchronized void invalidate(String owner) {
+		entries.remove(owner);
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+}
@@ -0,0 +1,62 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+//JAX-RS 3.1
+import jakarta.ws.rs.BadRequestException;
+
+/** Opaque cursor for keyset pagination of GET /, recording the last owner returned.  The next page is asked of the
+ *  Portfolio service by that owner alone (see PortfolioClient.getPortfolios), which must return the owners after it
+ *  in the same order as it sorts its pages by.  The broker never compares owners itself, so the ordering (such as the
+ *  collation of the Portfolio service's database) is entirely the Portfolio service's, and inserts and deletes
+ *  before the cursor can't shift the pages after it.
+ */
+class PageCursor {
+	final String after;
+
+	PageCursor(String after) {
+		this.after = after;
+	}
+
+	/** Parses the cursor query param, throwing a BadRequestException (400) if it isn't one of ours */
+	static PageCursor decode(String cursor) {
+		try {
+			String after = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			if (after.isEmpty()) throw new IllegalArgumentException();
+			return new PageCursor(after);
+		} catch (RuntimeException e) {
+			throw new BadRequestException("Invalid cursor: "+cursor);
+		}
+	}
+
+	String encode() {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(after.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Returns the cursor for the page after this page of portfolios (in the order returned), or null if it was the last one */
+	static PageCursor next(int pageSize, List<Portfolio> portfolios) {
+		if ((portfolios == null) || (portfolios.size() < pageSize) || portfolios.isEmpty()) return null;
+		String owner = portfolios.get(portfolios.size() - 1).getOwner();
+		return (owner != null) ? new PageCursor(owner) : null;
+	}
+}
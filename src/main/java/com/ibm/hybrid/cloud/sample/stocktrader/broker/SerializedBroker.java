@@ -0,0 +1,53 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+//JAX-RS 3.1
+import jakarta.ws.rs.core.EntityTag;
+
+/** A Broker along with its JSON, and a strong ETag computed from that JSON, so that repeat reads can be answered
+ *  (or answered with a 304) without serializing the broker again.
+ */
+class SerializedBroker {
+	final Broker broker;
+	final byte[] json;
+	final EntityTag etag;
+
+	SerializedBroker(Broker broker, String json) {
+		this.broker = broker;
+		this.json = json.getBytes(StandardCharsets.UTF_8);
+		this.etag = new EntityTag(hash(this.json));
+	}
+
+	/** Hex of the first 128 bits of the SHA-256 of the JSON, which is plenty to tell two versions of a broker apart */
+	private static String hash(byte[] json) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+			return HexFormat.of().formatHex(Arrays.copyOf(digest, 16));
+		} catch (NoSuchAlgorithmException e) { //every Java runtime is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
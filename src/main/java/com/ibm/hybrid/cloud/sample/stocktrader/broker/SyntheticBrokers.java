@@ -0,0 +1,153 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Stock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/** Deterministic synthetic brokers for TEST_MODE, so that the HTTP and JSON paths can be measured at scale without
+ *  any downstream microservices.  Only each broker's total and loyalty level are stored (in primitive arrays, so a
+ *  million brokers take about 9 MB); everything else, including the holdings, is regenerated on demand from a random
+ *  number generator seeded by the seed and the broker's index, so the same settings always produce the same brokers.
+ *  Owners are named Owner0000000, Owner0000001 and so on, so sorting by owner is the same as sorting by index
+ *  (which is why there can be at most MAX_SIZE of them).
+ */
+class SyntheticBrokers {
+	private static final String[] LOYALTY = {"Basic", "Bronze", "Silver", "Gold", "Platinum"};
+	private static final double[] LOYALTY_THRESHOLDS = {10000.0, 50000.0, 100000.0, 1000000.0}; //as used by Account
+	private static final double[] COMMISSIONS = {9.99, 8.99, 7.99, 6.99, 5.99}; //by loyalty level
+	private static final String OWNER_PREFIX = "Owner";
+	private static final String DATE = "2026-01-02";
+	static final int MAX_SIZE = 10000000;
+
+	private final long seed;
+	private final int stocksPerBroker;
+	private final double[] totals;
+	private final byte[] loyalties;
+
+	SyntheticBrokers(int count, int stocksPerBroker, long seed) {
+		this.seed = seed;
+		this.stocksPerBroker = stocksPerBroker;
+		totals = new double[count];
+		loyalties = new byte[count];
+		for (int index = 0; index < count; index++) {
+			double total = 0.0;
+			SplittableRandom random = random(index);
+			for (int stock = 0; stock < stocksPerBroker; stock++) total += stock(random, stock).getTotal();
+			if (stocksPerBroker == 0) total = cents(random.nextDouble() * 2000000.0);
+			totals[index] = total;
+			loyalties[index] = loyalty(total);
+		}
+	}
+
+	int size() {
+		return totals.length;
+	}
+
+	static String owner(int index) {
+		StringBuilder owner = new StringBuilder(OWNER_PREFIX.length() + 7).append(OWNER_PREFIX);
+		String digits = Integer.toString(index);
+		for (int pad = digits.length(); pad < 7; pad++) owner.append('0');
+		return owner.append(digits).toString();
+	}
+
+	/** Returns the index of the specified owner, or -1 if there's no such synthetic broker */
+	int indexOf(String owner) {
+		if ((owner == null) || !owner.startsWith(OWNER_PREFIX)) return -1;
+		try {
+			int index = Integer.parseInt(owner.substring(OWNER_PREFIX.length()));
+			return ((index >= 0) && (index < totals.length) && owner.equals(owner(index))) ? index : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	Broker get(String owner) {
+		int index = indexOf(owner);
+		return (index >= 0) ? get(index) : null;
+	}
+
+	Broker get(int index) {
+		SplittableRandom random = random(index);
+		List<Stock> stocks = new ArrayList<>(stocksPerBroker);
+		for (int stock = 0; stock < stocksPerBroker; stock++) stocks.add(stock(random, stock));
+
+		int loyalty = loyalties[index];
+		double commissions = cents(COMMISSIONS[0] * stocksPerBroker); //what each of the holdings was bought with
+		Broker broker = new Broker(owner(index), totals[index], LOYALTY[loyalty], cents(50.0 - commissions), commissions,
+			0, "Unknown", COMMISSIONS[loyalty]);
+		broker.setCashAccountBalance(cents(random(~index).nextDouble() * 100000.0));
+		broker.setCashAccountCurrency("USD");
+		broker.addStocks(stocks);
+		return broker;
+	}
+
+	/** The brokers on the specified page (numbered from 1) */
+	List<Broker> page(int pageNumber, int pageSize) {
+		long from = (long) (Math.max(pageNumber, 1) - 1) * pageSize;
+		return range(from, pageSize);
+	}
+
+	/** The page of brokers whose owners sort after the specified one */
+	List<Broker> after(String owner, int pageSize) {
+		int index = indexOf(owner);
+		if (index < 0) { //not one of ours, so find where it would sort
+			int low = 0, high = totals.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (owner(middle).compareTo(owner) <= 0) low = middle + 1; else high = middle;
+			}
+			return range(low, pageSize);
+		}
+		return range(index + 1L, pageSize);
+	}
+
+	private List<Broker> range(long from, int pageSize) {
+		if ((from >= totals.length) || (pageSize <= 0)) return Collections.emptyList();
+		int to = (int) Math.min(from + pageSize, totals.length);
+		List<Broker> brokers = new ArrayList<>(to - (int) from);
+		for (int index = (int) from; index < to; index++) brokers.add(get(index));
+		return brokers;
+	}
+
+	private SplittableRandom random(int index) {
+		return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+	}
+
+	/** Generates the next holding, with a symbol that's distinct from the broker's other holdings */
+	private static Stock stock(SplittableRandom random, int stock) {
+		String symbol = "S" + Integer.toString(stock * 997 + random.nextInt(997), 36).toUpperCase();
+		int shares = 1 + random.nextInt(500);
+		double price = cents(5.0 + random.nextDouble() * 495.0);
+		return new Stock(symbol, shares, COMMISSIONS[0], price, cents(shares * price), DATE);
+	}
+
+	private static byte loyalty(double total) {
+		byte level = 0;
+		while ((level < LOYALTY_THRESHOLDS.length) && (total >= LOYALTY_THRESHOLDS[level])) level++;
+		return level;
+	}
+
+	private static double cents(double amount) {
+		return Math.round(amount * 100.0) / 100.0;
+	}
+}
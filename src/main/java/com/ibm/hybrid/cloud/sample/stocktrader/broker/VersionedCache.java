@@ -0,0 +1,110 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//mpMetrics 5.1
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/** Bounded, time-to-live cache of values keyed by owner, where each owner has a version that changes whenever their
+ *  value is invalidated.  A value is only cached if the owner's version hasn't changed since before it was fetched,
+ *  so a response that raced with a later write (and so may predate it) is never cached.  Versions are unique across
+ *  all owners, so one recreated after being evicted can't match a version taken before.  When full, the least
+ *  recently used owner is evicted.  Hit, miss and eviction counts (plus the current size) are exported via mpMetrics,
+ *  prefixed by the cache name.
+ */
+class VersionedCache<V> {
+	private final int maxSize;
+	private final long ttlNanos;
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter evictions;
+	private final LinkedHashMap<String, Entry<V>> entries;
+	private long lastVersion = 0; //guarded by this
+
+	private static class Entry<V> {
+		private long version;
+		private V value = null;
+		private long expires;
+
+		private Entry(long version) {
+			this.version = version;
+		}
+	}
+
+	VersionedCache(String name, int maxSize, long ttlMillis, MetricRegistry registry) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlMillis * 1_000_000L;
+		hits = registry.counter(name+".hits");
+		misses = registry.counter(name+".misses");
+		evictions = registry.counter(name+".evictions");
+		registry.gauge(name+".size", this, VersionedCache::size);
+
+		entries = new LinkedHashMap<>(16, 0.75f, true) { //access order, so the eldest entry is the least recently used
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+				boolean full = size() > VersionedCache.this.maxSize;
+				if (full) evictions.inc();
+				return full;
+			}
+		};
+	}
+
+	/** Returns the cached value for this owner, or null if there isn't a current one */
+	synchronized V get(String owner) {
+		Entry<V> entry = entries.get(owner);
+		if ((entry != null) && (entry.value != null)) {
+			if (System.nanoTime() - entry.expires < 0) {
+				hits.inc();
+				return entry.value;
+			}
+			entry.value = null;
+		}
+		misses.inc();
+		return null;
+	}
+
+	/** Take the version before fetching a value, and pass it to putIfCurrent once it has been fetched */
+	synchronized long version(String owner) {
+		return entries.computeIfAbsent(owner, key -> new Entry<>(++lastVersion)).version;
+	}
+
+	/** Called when a write for this owner starts, returning the new version, for caching the write's response */
+	synchronized long invalidate(String owner) {
+		Entry<V> entry = entries.computeIfAbsent(owner, key -> new Entry<>(0));
+		entry.version = ++lastVersion;
+		entry.value = null;
+		return entry.version;
+	}
+
+	/** Caches the value only if this owner's version is still the one given */
+	synchronized boolean putIfCurrent(String owner, V value, long version) {
+		Entry<V> entry = entries.get(owner);
+		if ((value == null) || (entry == null) || (entry.version != version)) return false;
+		entry.value = value;
+		entry.expires = System.nanoTime() + ttlNanos;
+		return true;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+}
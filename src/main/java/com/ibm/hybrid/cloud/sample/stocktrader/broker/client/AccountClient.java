@@ -28,10 +28,17 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 
+//mpFaultTolerance 4.0
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+
 import org.eclipse.microprofile.rest.client.annotation.RegisterClientHeaders;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 
 @ApplicationPath("/")
@@ -40,6 +47,12 @@ import java.util.List;
 @RegisterRestClient
 @RegisterClientHeaders //To enable JWT propagation
 // JWT is propagated.  See src/main/resources/META-INF/microprofile-config.properties
+@RegisterProvider(StatusExceptionMapper.class)
+@DownstreamMetrics //times each call, tagged by outcome
+// Fault tolerance policies can be overridden via mpConfig.  See src/main/resources/META-INF/microprofile-config.properties
+@Timeout(5000)
+@Bulkhead(50)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5000, skipOn = ClientErrorException.class)
 /** mpRestClient "remote" interface for the Account microservice */
 public interface AccountClient {
 	@GET
@@ -49,6 +62,13 @@ public interface AccountClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="AccountClient.getAccounts")
     public List<Account> getAccounts(@QueryParam("page") @DefaultValue("1") int pageNumber, @QueryParam("pageSize") @DefaultValue("10") int pageSize, @QueryParam("owners") List<String> owners);
 
+	@GET
+	@Path("/")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="AccountClient.getAccountsAsync")
+	public CompletionStage<List<Account>> getAccountsAsync(@QueryParam("page") @DefaultValue("1") int pageNumber, @QueryParam("pageSize") @DefaultValue("10") int pageSize, @QueryParam("owners") List<String> owners);
+
 	@GET
 	@Path("/{id}")
 	@Consumes(MediaType.APPLICATION_JSON)
@@ -70,6 +90,21 @@ public interface AccountClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="AccountClient.updateAccount")
 	public Account updateAccount(@PathParam("id") String id, @QueryParam("total") double total);
 
+	/** For calls made outside of a request (such as by the outbox), where there's no JWT to propagate */
+	@PUT
+	@Path("/{id}")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="AccountClient.updateAccount")
+	public Account updateAccount(@PathParam("id") String id, @QueryParam("total") double total, @HeaderParam("Authorization") String authorization);
+
+	@PUT
+	@Path("/{id}")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="AccountClient.updateAccountAsync")
+	public CompletionStage<Account> updateAccountAsync(@PathParam("id") String id, @QueryParam("total") double total);
+
 	@DELETE
 	@Path("/{id}")
 	@Consumes(MediaType.APPLICATION_JSON)
@@ -77,6 +112,13 @@ public interface AccountClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="AccountClient.deleteAccount")
 	public Account deleteAccount(@PathParam("id") String id);
 
+	@DELETE
+	@Path("/{id}")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="AccountClient.deleteAccountAsync")
+	public CompletionStage<Account> deleteAccountAsync(@PathParam("id") String id);
+
 	@POST
 	@Path("/{id}/feedback")
 	@Consumes(MediaType.APPLICATION_JSON)
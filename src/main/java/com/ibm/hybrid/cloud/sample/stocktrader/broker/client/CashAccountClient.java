@@ -23,6 +23,7 @@ import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 
 import jakarta.ws.rs.ApplicationPath;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
@@ -35,9 +36,17 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.core.MediaType;
 
+//mpFaultTolerance 4.0
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+
 import org.eclipse.microprofile.rest.client.annotation.RegisterClientHeaders;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
+import java.util.concurrent.CompletionStage;
+
 
 @ApplicationPath("/")
 @Path("/")
@@ -45,6 +54,12 @@ import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 @RegisterRestClient
 @RegisterClientHeaders //To enable JWT propagation
 // JWT is propagated.  See src/main/resources/META-INF/microprofile-config.properties
+@RegisterProvider(StatusExceptionMapper.class)
+@DownstreamMetrics //times each call, tagged by outcome
+// Fault tolerance policies can be overridden via mpConfig.  See src/main/resources/META-INF/microprofile-config.properties
+@Timeout(5000)
+@Bulkhead(50)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5000, skipOn = ClientErrorException.class)
 /** mpRestClient "remote" interface for the CashAccount microservice */
 public interface CashAccountClient {
 	@GET
@@ -54,6 +69,13 @@ public interface CashAccountClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.getCashAccount")
 	public CashAccount getCashAccount(@PathParam("owner") String owner);
 
+	@GET
+	@Path("/{owner}")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.getCashAccountAsync")
+	public CompletionStage<CashAccount> getCashAccountAsync(@PathParam("owner") String owner);
+
 	@POST
 	@Path("/{owner}")
 	@Consumes(MediaType.APPLICATION_JSON)
@@ -75,6 +97,13 @@ public interface CashAccountClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.deleteCashAccount")
 	public CashAccount deleteCashAccount(@PathParam("owner") String owner);
 
+	@DELETE
+	@Path("/{owner}")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.deleteCashAccountAsync")
+	public CompletionStage<CashAccount> deleteCashAccountAsync(@PathParam("owner") String owner);
+
 	@PUT
 	@Path("/{owner}/debit")
 	@Consumes(MediaType.APPLICATION_JSON)
@@ -82,10 +111,40 @@ public interface CashAccountClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.debit")
 	public CashAccount debit(@PathParam("owner") String owner, @QueryParam("amount") double amount);
 
+	/** For calls made outside of a request (such as by the outbox), where there's no JWT to propagate */
+	@PUT
+	@Path("/{owner}/debit")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.debit")
+	public CashAccount debit(@PathParam("owner") String owner, @QueryParam("amount") double amount, @HeaderParam("Authorization") String authorization);
+
+	@PUT
+	@Path("/{owner}/debit")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.debitAsync")
+	public CompletionStage<CashAccount> debitAsync(@PathParam("owner") String owner, @QueryParam("amount") double amount);
+
 	@PUT
 	@Path("/{owner}/credit")
 	@Consumes(MediaType.APPLICATION_JSON)
 	@Produces(MediaType.APPLICATION_JSON)
 	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.credit")
 	public CashAccount credit(@PathParam("owner") String owner, @QueryParam("amount") double amount);
+
+	/** For calls made outside of a request (such as by the outbox), where there's no JWT to propagate */
+	@PUT
+	@Path("/{owner}/credit")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.credit")
+	public CashAccount credit(@PathParam("owner") String owner, @QueryParam("amount") double amount, @HeaderParam("Authorization") String authorization);
+
+	@PUT
+	@Path("/{owner}/credit")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="CashAccountClient.creditAsync")
+	public CompletionStage<CashAccount> creditAsync(@PathParam("owner") String owner, @QueryParam("amount") double amount);
 }
@@ -0,0 +1,91 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+//CDI 4.0
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+//JAX-RS 3.1
+import jakarta.ws.rs.WebApplicationException;
+
+//mpFaultTolerance 4.0
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceException;
+
+//mpMetrics 5.1
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+/** Records a "downstream.calls" timer for every call to a downstream microservice, tagged by the client interface,
+ *  the method, and the outcome: "success", "clientError" or "serverError" for an HTTP response, the name of the
+ *  exception if the fault tolerance layer gave up on the call (such as "CircuitBreakerOpenException"), else "error".
+ *  It runs outside the fault tolerance interceptors, so the time includes any wait for a bulkhead.  Asynchronous
+ *  calls are timed until their CompletionStage completes, rather than until they return.
+ */
+@DownstreamMetrics
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class DownstreamMetricsInterceptor {
+	static final String TIMER_NAME = "downstream.calls";
+
+	@Inject MetricRegistry metricRegistry;
+
+	@AroundInvoke
+	public Object time(InvocationContext context) throws Exception {
+		long start = System.nanoTime();
+		Object result;
+		try {
+			result = context.proceed();
+		} catch (Exception e) {
+			record(context, start, e);
+			throw e;
+		}
+
+		if (result instanceof CompletionStage) {
+			((CompletionStage<?>) result).whenComplete((value, t) -> record(context, start, t));
+		} else {
+			record(context, start, null);
+		}
+		return result;
+	}
+
+	private void record(InvocationContext context, long start, Throwable t) {
+		long elapsed = System.nanoTime() - start;
+		String client = context.getMethod().getDeclaringClass().getSimpleName();
+		String method = context.getMethod().getName();
+		metricRegistry.timer(TIMER_NAME, new Tag("client", client), new Tag("method", method), new Tag("outcome", outcome(t)))
+			.update(Duration.ofNanos(elapsed));
+	}
+
+	static String outcome(Throwable t) {
+		if ((t instanceof CompletionException) && (t.getCause() != null)) t = t.getCause();
+		if (t == null) return "success";
+		if (t instanceof WebApplicationException) {
+			int status = ((WebApplicationException) t).getResponse().getStatus();
+			return (status >= 500) ? "serverError" : "clientError";
+		}
+		if (t instanceof FaultToleranceException) return t.getClass().getSimpleName();
+		return "error";
+	}
+}
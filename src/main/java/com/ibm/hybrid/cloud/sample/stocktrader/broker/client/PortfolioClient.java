@@ -28,10 +28,17 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 
+//mpFaultTolerance 4.0
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+
 import org.eclipse.microprofile.rest.client.annotation.RegisterClientHeaders;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 
 @ApplicationPath("/")
@@ -40,6 +47,12 @@ import java.util.List;
 @RegisterRestClient
 @RegisterClientHeaders //To enable JWT propagation
 // JWT is propagated.  See src/main/resources/META-INF/microprofile-config.properties
+@RegisterProvider(StatusExceptionMapper.class)
+@DownstreamMetrics //times each call, tagged by outcome
+// Fault tolerance policies can be overridden via mpConfig.  See src/main/resources/META-INF/microprofile-config.properties
+@Timeout(10000)
+@Bulkhead(100)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5000, skipOn = ClientErrorException.class)
 /** mpRestClient "remote" interface for the Portfolio microservice */
 public interface PortfolioClient {
 //	@GET
@@ -53,6 +66,15 @@ public interface PortfolioClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="PortfolioClient.getPortfolios")
 	public List<Portfolio> getPortfolios(@QueryParam("page") @DefaultValue("1") int pageNumber, @QueryParam("pageSize") @DefaultValue("10") int pageSize);
 
+	/** Keyset pagination: the first pageSize portfolios whose owners sort after the specified one, in owner order (such
+	 *  as "WHERE owner > ? ORDER BY owner").  Pages by number must be in the same order, so that a cursor taken from
+	 *  one continues where it left off */
+	@GET
+	@Path("/")
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="PortfolioClient.getPortfolios")
+	public List<Portfolio> getPortfolios(@QueryParam("pageSize") @DefaultValue("10") int pageSize, @QueryParam("after") String after);
+
 	@POST
 	@Path("/{owner}")
 	@Produces(MediaType.APPLICATION_JSON)
@@ -65,12 +87,31 @@ public interface PortfolioClient {
 	@WithSpan(kind = SpanKind.CLIENT, value="PortfolioClient.getPortfolio")
 	public Portfolio getPortfolio(@PathParam("owner") String owner, @QueryParam("immutable") boolean immutable);
 
+	/** For calls made outside of a request (such as by the outbox), where there's no JWT to propagate */
+	@GET
+	@Path("/{owner}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="PortfolioClient.getPortfolio")
+	public Portfolio getPortfolio(@PathParam("owner") String owner, @QueryParam("immutable") boolean immutable, @HeaderParam("Authorization") String authorization);
+
+	@GET
+	@Path("/{owner}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="PortfolioClient.getPortfolioAsync")
+	public CompletionStage<Portfolio> getPortfolioAsync(@PathParam("owner") String owner, @QueryParam("immutable") boolean immutable);
+
 	@PUT
 	@Path("/{owner}")
 	@Produces(MediaType.APPLICATION_JSON)
 	@WithSpan(kind = SpanKind.CLIENT, value="PortfolioClient.updatePortfolio")
 	public Portfolio updatePortfolio(@PathParam("owner") String owner, @QueryParam("symbol") String symbol, @QueryParam("shares") int shares, @QueryParam("commission") double commission);
 
+	@PUT
+	@Path("/{owner}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@WithSpan(kind = SpanKind.CLIENT, value="PortfolioClient.updatePortfolioAsync")
+	public CompletionStage<Portfolio> updatePortfolioAsync(@PathParam("owner") String owner, @QueryParam("symbol") String symbol, @QueryParam("shares") int shares, @QueryParam("commission") double commission);
+
 	@DELETE
 	@Path("/{owner}")
 	@Produces(MediaType.APPLICATION_JSON)
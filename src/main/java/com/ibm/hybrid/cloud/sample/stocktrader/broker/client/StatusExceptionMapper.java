@@ -0,0 +1,43 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.client;
+
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.ServerErrorException;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Response;
+
+import org.eclipse.microprofile.rest.client.ext.ResponseExceptionMapper;
+
+/** Maps error responses from the downstream microservices to ClientErrorException (4xx) or ServerErrorException
+ *  (5xx), rather than a plain WebApplicationException, so that the circuit breakers on the mpRestClient interfaces
+ *  can skip client errors like a 404 for an owner that doesn't exist - those don't mean the service is unhealthy.
+ */
+public class StatusExceptionMapper implements ResponseExceptionMapper<WebApplicationException> {
+	@Override
+	public boolean handles(int status, MultivaluedMap<String, Object> headers) {
+		return status >= 400;
+	}
+
+	@Override
+	public WebApplicationException toThrowable(Response response) {
+		int status = response.getStatus();
+		if (status >= 500) return new ServerErrorException(response);
+		return new ClientErrorException(response);
+	}
+}
@@ -22,6 +22,7 @@ import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 
 import jakarta.ws.rs.ApplicationPath;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PathParam;
@@ -29,15 +30,30 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.Path;
+
+//mpFaultTolerance 4.0
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+
 import org.eclipse.microprofile.rest.client.annotation.RegisterClientHeaders;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
+import java.util.concurrent.CompletionStage;
+
 @ApplicationPath("/")
 @Path("/")
 @ApplicationScoped
 @RegisterRestClient
 @RegisterClientHeaders //To enable JWT propagation
 // JWT is propagated.  See src/main/resources/META-INF/microprofile-config.properties
+@RegisterProvider(StatusExceptionMapper.class)
+@DownstreamMetrics //times each call, tagged by outcome
+// Fault tolerance policies can be overridden via mpConfig.  See src/main/resources/META-INF/microprofile-config.properties
+@Timeout(10000)
+@Bulkhead(20)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5000, skipOn = ClientErrorException.class)
 /** mpRestClient "remote" interface for the trade history microservice */
 public interface TradeHistoryClient {
     @GET
@@ -45,4 +61,10 @@ public interface TradeHistoryClient {
     @Produces(MediaType.TEXT_PLAIN)
     @WithSpan(kind = SpanKind.CLIENT, value="TradeHistoryClient.getReturns")
     public String getReturns(@PathParam("owner") String ownerName, @QueryParam("currentValue") Double portfolioValue);
+
+    @GET
+    @Path("/returns/{owner}")
+    @Produces(MediaType.TEXT_PLAIN)
+    @WithSpan(kind = SpanKind.CLIENT, value="TradeHistoryClient.getReturnsAsync")
+    public CompletionStage<String> getReturnsAsync(@PathParam("owner") String ownerName, @QueryParam("currentValue") Double portfolioValue);
 }
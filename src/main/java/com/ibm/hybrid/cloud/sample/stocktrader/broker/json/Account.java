@@ -16,6 +16,8 @@
 
 package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
 
+import java.util.Objects;
+
 
 /** JSON-B POJO class representing an Account JSON object */
 public class Account {
@@ -111,10 +113,22 @@ public class Account {
     }
 
     public boolean equals(Object obj) {
-        boolean isEqual = false;
-        if ((obj != null) && (obj instanceof Account)) isEqual = toString().equals(obj.toString());
-        return isEqual;
-   }
+        if (obj == this) return true;
+        if (!(obj instanceof Account)) return false;
+        Account other = (Account) obj;
+        return Objects.equals(id, other.id)
+            && Objects.equals(owner, other.owner)
+            && Objects.equals(loyalty, other.loyalty)
+            && (Double.compare(balance, other.balance) == 0)
+            && (Double.compare(commissions, other.commissions) == 0)
+            && (free == other.free)
+            && Objects.equals(sentiment, other.sentiment)
+            && (Double.compare(nextCommission, other.nextCommission) == 0);
+    }
+
+    public int hashCode() {
+        return Objects.hash(id, owner);
+    }
 
     public String toString() {
         return "{\"_id\": \""+ id +"\", \"owner\": \""+owner+"\", \"loyalty\": \""+loyalty
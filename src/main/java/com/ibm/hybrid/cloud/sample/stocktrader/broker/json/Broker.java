@@ -19,15 +19,17 @@ package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
 
 import java.math.RoundingMode;
 import java.text.NumberFormat;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 //JSON-P 1.0 (JSR 353).  This replaces my old usage of IBM's JSON4J (com.ibm.json.java.JSONObject)
-import jakarta.json.Json;
 import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 
-
 /** JSON-B POJO class representing a Broker JSON object */
 public class Broker {
     private static String UNKNOWN_STRING = "Unknown";
@@ -45,9 +47,18 @@ public class Broker {
     private double cashAccountBalance;
     private String cashAccountCurrency;
     private JsonObject stocks;
-    private NumberFormat currencyFormatter = null;
+    private List<String> degraded = null; //optional microservices whose data is a last known good value
     private static double ERROR = -1.0;
 
+    //NumberFormat isn't thread safe, so each thread gets its own, shared by all the Broker objects it formats
+    private static final ThreadLocal<NumberFormat> currencyFormatter = ThreadLocal.withInitial(() -> {
+        NumberFormat formatter = NumberFormat.getNumberInstance();
+        formatter.setMinimumFractionDigits(2);
+        formatter.setMaximumFractionDigits(2);
+        formatter.setRoundingMode(RoundingMode.HALF_UP);
+        return formatter;
+    });
+
 
     public Broker() { //default constructor
     }
@@ -172,6 +183,22 @@ public class Broker {
         cashAccountCurrency = newCashAccountCurrency;
     }
 
+    /** The optional microservices (like "Account") that couldn't be reached, and whose fields in this broker are
+     *  therefore their last known good values, rather than current ones.  Null if nothing is degraded.
+     */
+    public List<String> getDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(List<String> newDegraded) {
+        degraded = newDegraded;
+    }
+
+    public void addDegraded(String service) {
+        if (degraded == null) degraded = new ArrayList<>(2);
+        if (!degraded.contains(service)) degraded.add(service);
+    }
+
     public JsonObject getStocks() {
         return stocks;
     }
@@ -180,72 +207,73 @@ public class Broker {
         stocks = newStocks;
     }
 
+    /** Adds (or replaces) one holding.  To add many, use addStocks, which copies the existing ones just once. */
     public void addStock(Stock newStock) {
-        if (newStock != null) {
-            String symbol = newStock.getSymbol();
-            if (symbol != null) {
-                JsonObjectBuilder stocksBuilder = Json.createObjectBuilder();
-            
-                if (stocks != null) { //JsonObject is immutable, so copy current "stocks" into new builder
-                    Iterator<String> iter = stocks.keySet().iterator();
-                    while (iter.hasNext()) {
-                        String key = iter.next();
-                        JsonObject obj = stocks.getJsonObject(key);
-                        stocksBuilder.add(key, obj);
-                    }
-                }
-
-                //can only add a JSON-P object to a JSON-P object; can't add a JSON-B object.  So converting...
-                JsonObjectBuilder builder = Json.createObjectBuilder();
-
-                builder.add("symbol", symbol);
-                builder.add("shares", newStock.getShares());
-                builder.add("commission", newStock.getCommission());
-                builder.add("price", newStock.getPrice());
-                builder.add("total", newStock.getTotal());
-                builder.add("date", newStock.getDate());
-
-                JsonObject stock = builder.build();
-
-                stocksBuilder.add(symbol, stock); //might be replacing an item; caller needs to do any merge (like updatePortfolio does)
-                stocks = stocksBuilder.build();
+        //might be replacing an item; caller needs to do any merge (like updatePortfolio does)
+        if (newStock != null) addStocks(Collections.singletonList(newStock));
+    }
+
+    /** Adds (or replaces) many holdings, building the immutable "stocks" JSON object once for them all */
+    public void addStocks(Collection<Stock> newStocks) {
+        if (newStocks != null) { //JsonObject is immutable, so copy current "stocks" into new builder
+            JsonObjectBuilder builder = (stocks != null) ? Stock.jsonFactory.createObjectBuilder(stocks) : Stock.jsonFactory.createObjectBuilder();
+            for (Stock newStock : newStocks) {
+                if ((newStock != null) && (newStock.getSymbol() != null)) builder.add(newStock.getSymbol(), newStock.toJsonObject());
             }
+            stocks = builder.build();
         }
     }
 
     public boolean equals(Object obj) {
-        boolean isEqual = false;
-        if ((obj != null) && (obj instanceof Broker)) isEqual = toString().equals(obj.toString());
-        return isEqual;
-   }
+        if (obj == this) return true;
+        if (!(obj instanceof Broker)) return false;
+        Broker other = (Broker) obj;
+        return Objects.equals(owner, other.owner)
+            && (Double.compare(total, other.total) == 0)
+            && Objects.equals(loyalty, other.loyalty)
+            && (Double.compare(balance, other.balance) == 0)
+            && (Double.compare(commissions, other.commissions) == 0)
+            && (free == other.free)
+            && Objects.equals(sentiment, other.sentiment)
+            && (Double.compare(nextCommission, other.nextCommission) == 0)
+            && (Double.compare(cashAccountBalance, other.cashAccountBalance) == 0)
+            && Objects.equals(cashAccountCurrency, other.cashAccountCurrency)
+            && Objects.equals(degraded, other.degraded)
+            && Objects.equals(getStocks(), other.getStocks());
+    }
+
+    public int hashCode() {
+        return Objects.hash(owner);
+    }
 
     public String toString() {
-        if (currencyFormatter == null) {
-            currencyFormatter = NumberFormat.getNumberInstance();
-            currencyFormatter.setMinimumFractionDigits(2);
-            currencyFormatter.setMaximumFractionDigits(2);
-            currencyFormatter.setRoundingMode(RoundingMode.HALF_UP);
+        NumberFormat formatter = currencyFormatter.get();
+        StringBuilder json = new StringBuilder(256);
+
+        json.append("{\"owner\": \"").append(owner).append("\", \"total\": ").append(formatter.format(total))
+            .append(", \"loyalty\": \"").append(loyalty).append("\", \"balance\": ").append(formatter.format(balance))
+            .append(", \"commissions\": ").append(formatter.format(commissions)).append(", \"free\": ").append(free)
+            .append(", \"nextCommission\": ").append(formatter.format(nextCommission))
+            .append(", \"sentiment\": \"").append(sentiment).append("\", \"stocks\": ");
+        if (getStocks() != null) {
+            appendStocksJSON(json, formatter);
+        } else {
+            json.append("{}");
         }
 
-        return "{\"owner\": \""+owner+"\", \"total\": "+currencyFormatter.format(total)+", \"loyalty\": \""+loyalty
-               +"\", \"balance\": "+currencyFormatter.format(balance)+", \"commissions\": "+currencyFormatter.format(commissions)
-               +", \"free\": "+free+", \"nextCommission\": "+currencyFormatter.format(nextCommission)
-               +", \"sentiment\": \""+sentiment+"\", \"stocks\": "+(stocks!=null?getStocksJSON():"{}")+"}";
+        return json.append("}").toString();
     }
 
-    private String getStocksJSON() {
-        StringBuffer json = new StringBuffer();
-        Iterator<String> keys = stocks.keySet().iterator();
+    private void appendStocksJSON(StringBuilder json, NumberFormat formatter) {
+        json.append("{");
 
         boolean first = true;
-        while (keys.hasNext()) {
+        for (String key : stocks.keySet()) {
             if (first) {
-                json.append("{");
+                first = false;
             } else {
                 json.append(", ");
-                first = false;
             }
-            String key = keys.next();
             JsonObject stock = stocks.getJsonObject(key);
 
             String symbol = stock.getString("symbol");
@@ -257,11 +285,13 @@ public class Broker {
             double totalValue = (number != null) ? number.doubleValue() : ERROR;
             number = stock.getJsonNumber("commission");
             double commission = (number != null) ? number.doubleValue() : ERROR;
-            
-            json.append("\"key\": {\"symbol\": \""+symbol+"\", \"shares\": "+shares+", \"price\": "+currencyFormatter.format(price)
-                +", \"date\": \""+date+"\", \"total\": "+currencyFormatter.format(totalValue)+", \"commission\": "+currencyFormatter.format(commission)+"}");
+
+            json.append("\"").append(key).append("\": {\"symbol\": \"").append(symbol).append("\", \"shares\": ").append(shares)
+                .append(", \"price\": ").append(formatter.format(price)).append(", \"date\": \"").append(date)
+                .append("\", \"total\": ").append(formatter.format(totalValue))
+                .append(", \"commission\": ").append(formatter.format(commission)).append("}");
         }
 
-        return json.append("}").toString();
+        json.append("}");
     }
 }
@@ -16,6 +16,8 @@
 
 package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
 
+import java.util.Objects;
+
 
 /** JSON-B POJO class representing a CashAccount JSON object */
 public class CashAccount {
@@ -61,10 +63,17 @@ public class CashAccount {
     }
 
     public boolean equals(Object obj) {
-        boolean isEqual = false;
-        if ((obj != null) && (obj instanceof CashAccount)) isEqual = toString().equals(obj.toString());
-        return isEqual;
-   }
+        if (obj == this) return true;
+        if (!(obj instanceof CashAccount)) return false;
+        CashAccount other = (CashAccount) obj;
+        return Objects.equals(owner, other.owner)
+            && (Double.compare(balance, other.balance) == 0)
+            && Objects.equals(currency, other.currency);
+    }
+
+    public int hashCode() {
+        return Objects.hash(owner);
+    }
 
     public String toString() {
         return "{\"owner\": \""+owner+"\", \"balance\": "+balance+", \"currency\": \""+currency+"\"}";
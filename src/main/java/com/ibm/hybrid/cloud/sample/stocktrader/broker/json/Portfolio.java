@@ -18,8 +18,10 @@
 package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Iterator;
+import java.util.Objects;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
@@ -33,7 +35,6 @@ import jakarta.json.JsonObject;
 import jakarta.json.bind.annotation.JsonbTransient;
 
 //JSON-P 1.0 (JSR 353).  This replaces my old usage of IBM's JSON4J (com.ibm.json.java.JSONObject)
-import jakarta.json.Json;
 import jakarta.json.JsonObjectBuilder;
 
 @Entity
@@ -112,46 +113,38 @@ public class Portfolio {
         stocks = newStocks;
     }
    
+    /** Adds (or replaces) one holding.  To add many, use addStocks, which copies the existing ones just once. */
     public void addStock(Stock newStock) {
-        if (newStock != null) {
-            String symbol = newStock.getSymbol();
-            if (symbol != null) {
-                JsonObjectBuilder stocksBuilder = Json.createObjectBuilder();
-            
-                if (stocks != null) { //JsonObject is immutable, so copy current "stocks" into new builder
-                    Iterator<String> iter = stocks.keySet().iterator();
-                    while (iter.hasNext()) {
-                        String key = iter.next();
-                        JsonObject obj = stocks.getJsonObject(key);
-                        stocksBuilder.add(key, obj);
-                    }
-                }
-
-                //can only add a JSON-P object to a JSON-P object; can't add a JSON-B object.  So converting...
-                JsonObjectBuilder builder = Json.createObjectBuilder();
-
-                builder.add("symbol", symbol);
-                builder.add("shares", newStock.getShares());
-                builder.add("commission", newStock.getCommission());
-                builder.add("price", newStock.getPrice());
-                builder.add("total", newStock.getTotal());
-                builder.add("date", newStock.getDate());
-
-                JsonObject stock = builder.build();
-
-                stocksBuilder.add(symbol, stock); //might be replacing an item; caller needs to do any merge (like updatePortfolio does)
-                stocks = stocksBuilder.build();
+        //might be replacing an item; caller needs to do any merge (like updatePortfolio does)
+        if (newStock != null) addStocks(Collections.singletonList(newStock));
+    }
+
+    /** Adds (or replaces) many holdings, building the immutable "stocks" JSON object once for them all */
+    public void addStocks(Collection<Stock> newStocks) {
+        if (newStocks != null) { //JsonObject is immutable, so copy current "stocks" into new builder
+            JsonObjectBuilder builder = (stocks != null) ? Stock.jsonFactory.createObjectBuilder(stocks) : Stock.jsonFactory.createObjectBuilder();
+            for (Stock newStock : newStocks) {
+                if ((newStock != null) && (newStock.getSymbol() != null)) builder.add(newStock.getSymbol(), newStock.toJsonObject());
             }
+            stocks = builder.build();
         }
     }
 
     public boolean equals(Object obj) {
-        boolean isEqual = false;
-        if ((obj != null) && (obj instanceof Portfolio)) isEqual = toString().equals(obj.toString());
-        return isEqual;
-   }
+        if (obj == this) return true;
+        if (!(obj instanceof Portfolio)) return false;
+        Portfolio other = (Portfolio) obj;
+        return Objects.equals(owner, other.owner)
+            && (Double.compare(total, other.total) == 0)
+            && Objects.equals(accountID, other.accountID)
+            && Objects.equals(getStocks(), other.getStocks());
+    }
+
+    public int hashCode() {
+        return Objects.hash(owner);
+    }
 
     public String toString() {
-        return "{\"owner\": \""+owner+"\", \"total\": "+total+", \"accountID\": \""+accountID+"\", \"stocks\": "+(stocks!=null?stocks.toString():"{}")+"}";
+        return "{\"owner\": \""+owner+"\", \"total\": "+total+", \"accountID\": \""+accountID+"\", \"stocks\": "+(getStocks()!=null?stocks.toString():"{}")+"}";
     }
 }
@@ -16,6 +16,8 @@
 
 package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
 
+import java.util.Objects;
+
 /** JSON-B POJO class representing a Quote JSON object */
 public class Quote {
     private String symbol;
@@ -77,10 +79,18 @@ public class Quote {
     }
 
     public boolean equals(Object obj) {
-        boolean isEqual = false;
-        if ((obj != null) && (obj instanceof Quote)) isEqual = toString().equals(obj.toString());
-        return isEqual;
-   }
+        if (obj == this) return true;
+        if (!(obj instanceof Quote)) return false;
+        Quote other = (Quote) obj;
+        return Objects.equals(symbol, other.symbol)
+            && (Double.compare(price, other.price) == 0)
+            && Objects.equals(date, other.date)
+            && (time == other.time);
+    }
+
+    public int hashCode() {
+        return Objects.hash(symbol, time);
+    }
 
     public String toString() {
         return "{\"symbol\": \""+symbol+"\", \"price\": "+price+", \"date\": \""+date+"\", \"time\": "+time+"}";
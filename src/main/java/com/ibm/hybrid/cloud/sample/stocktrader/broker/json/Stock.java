@@ -17,6 +17,11 @@
 
 package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
 
+//JSON-P 1.0 (JSR 353)
+import jakarta.json.Json;
+import jakarta.json.JsonBuilderFactory;
+import jakarta.json.JsonObject;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 import jakarta.persistence.Id;
@@ -33,6 +38,8 @@ import jakarta.persistence.ManyToOne;
             query = "SELECT s FROM Stock s WHERE s.portfolio.owner = :owner AND s.symbol = :symbol")
 /** JSON-B POJO class representing a Stock JSON object */
 public class Stock {
+    //Json.createObjectBuilder() looks up the JSON-P provider on every call, so look it up once and share the factory
+    static final JsonBuilderFactory jsonFactory = Json.createBuilderFactory(null);
 
     @Id
     @Column(nullable = false, length = 8)
@@ -123,6 +130,20 @@ public class Stock {
         portfolio = newPortfolio;
     }
 
+    /** Converts this JSON-B object to the JSON-P object held in the "stocks" of a Portfolio or Broker
+     *  (can only add a JSON-P object to a JSON-P object; can't add a JSON-B object)
+     */
+    JsonObject toJsonObject() {
+        return jsonFactory.createObjectBuilder()
+            .add("symbol", symbol)
+            .add("shares", shares)
+            .add("commission", commission)
+            .add("price", price)
+            .add("total", total)
+            .add("date", date)
+            .build();
+    }
+
     public String toString() {
         return "{\"symbol\": \""+symbol+"\", \"shares\": "+shares+", \"commission\": "+commission
                +", \"price\": "+price+", \"total\": "+total+", \"date\": \""+date+"\"}";
@@ -16,6 +16,8 @@
 
 package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
 
+import java.util.Objects;
+
 /** JSON-B POJO class representing a Stock Purchase JSON object */
 public class StockPurchase {
     private String id; //each trade will have its own UUID
@@ -98,10 +100,21 @@ public class StockPurchase {
     }
 
     public boolean equals(Object obj) {
-        boolean isEqual = false;
-        if ((obj != null) && (obj instanceof StockPurchase)) isEqual = toString().equals(obj.toString());
-        return isEqual;
-   }
+        if (obj == this) return true;
+        if (!(obj instanceof StockPurchase)) return false;
+        StockPurchase other = (StockPurchase) obj;
+        return Objects.equals(id, other.id)
+            && Objects.equals(owner, other.owner)
+            && Objects.equals(symbol, other.symbol)
+            && (shares == other.shares)
+            && (Double.compare(price, other.price) == 0)
+            && Objects.equals(when, other.when)
+            && (Double.compare(commission, other.commission) == 0);
+    }
+
+    public int hashCode() {
+        return Objects.hash(id, owner);
+    }
 
     public String toString() {
         return "{\"id\": \""+id+"\", \"owner\": \""+owner+"\", \"symbol\": \""+symbol+"\", \"shares\": "+shares+
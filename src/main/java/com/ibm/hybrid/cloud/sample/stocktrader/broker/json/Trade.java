@@ -0,0 +1,70 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.json;
+
+import java.util.Objects;
+
+/** JSON-B POJO class representing one trade (a change in the shares held of a symbol) in a bulk trade request */
+public class Trade {
+    private String symbol;
+    private int shares;
+
+
+    public Trade() { //default constructor
+    }
+
+    public Trade(String initialSymbol) { //primary key constructor
+        setSymbol(initialSymbol);
+    }
+
+    public Trade(String initialSymbol, int initialShares) {
+        setSymbol(initialSymbol);
+        setShares(initialShares);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String newSymbol) {
+        symbol = newSymbol;
+    }
+
+    public int getShares() {
+        return shares;
+    }
+
+    public void setShares(int newShares) {
+        shares = newShares;
+    }
+
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (!(obj instanceof Trade)) return false;
+        Trade other = (Trade) obj;
+        return Objects.equals(symbol, other.symbol)
+            && (shares == other.shares);
+    }
+
+    public int hashCode() {
+        return 31 * Objects.hashCode(symbol) + shares;
+    }
+
+    public String toString() {
+        return "{\"symbol\": \""+symbol+"\", \"shares\": "+shares+"}";
+    }
+}
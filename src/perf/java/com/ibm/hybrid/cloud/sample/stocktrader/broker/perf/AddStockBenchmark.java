@@ -0,0 +1,85 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Stock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.json.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Building up the stocks of a portfolio or broker, one holding at a time or all at once */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AddStockBenchmark {
+	@Param({"10", "100", "500"})
+	public int stockCount;
+
+	private List<Stock> stocks;
+
+	@Setup
+	public void setup() {
+		stocks = PerfData.stocks(stockCount);
+	}
+
+	@Benchmark
+	public JsonObject portfolioAddStock() {
+		Portfolio portfolio = PerfData.portfolio(1);
+		for (Stock stock : stocks) portfolio.addStock(stock);
+		return portfolio.getStocks();
+	}
+
+	@Benchmark
+	public JsonObject portfolioAddStocks() {
+		Portfolio portfolio = PerfData.portfolio(1);
+		portfolio.addStocks(stocks);
+		return portfolio.getStocks();
+	}
+
+	@Benchmark
+	public JsonObject brokerAddStock() {
+		Broker broker = new Broker(PerfData.owner(1));
+		for (Stock stock : stocks) broker.addStock(stock);
+		return broker.getStocks();
+	}
+
+	@Benchmark
+	public JsonObject brokerAddStocks() {
+		Broker broker = new Broker(PerfData.owner(1));
+		broker.addStocks(stocks);
+		return broker.getStocks();
+	}
+}
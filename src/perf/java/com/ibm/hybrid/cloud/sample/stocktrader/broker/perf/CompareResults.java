@@ -0,0 +1,101 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+/** Compares two JMH JSON result files (such as target/jmh-result.json from two releases), printing the change in
+ *  each benchmark's score and exiting with status 1 if any got worse by more than the threshold percentage.
+ *
+ *  Usage: CompareResults &lt;baseline.json&gt; &lt;current.json&gt; [thresholdPercent, default 10]
+ */
+public final class CompareResults {
+	private CompareResults() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CompareResults <baseline.json> <current.json> [thresholdPercent]");
+			System.exit(2);
+		}
+		double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : 10.0;
+
+		Map<String, JsonObject> baseline = read(Path.of(args[0]));
+		Map<String, JsonObject> current = read(Path.of(args[1]));
+
+		int regressions = 0;
+		for (Map.Entry<String, JsonObject> entry : current.entrySet()) {
+			JsonObject before = baseline.get(entry.getKey());
+			if (before == null) {
+				System.out.println(String.format("%-90s %s", entry.getKey(), "new"));
+				continue;
+			}
+			JsonObject after = entry.getValue();
+			double oldScore = score(before);
+			double newScore = score(after);
+			double change = (oldScore == 0) ? 0 : (newScore - oldScore) * 100.0 / oldScore;
+
+			//throughput is better when higher; every other JMH mode measures time, which is better when lower
+			boolean higherIsBetter = "thrpt".equals(after.getString("mode", ""));
+			double worse = higherIsBetter ? -change : change;
+			boolean regressed = worse > threshold;
+			if (regressed) regressions++;
+
+			System.out.println(String.format("%-90s %12.3f -> %12.3f %s %+7.1f%%%s", entry.getKey(), oldScore, newScore,
+					after.getJsonObject("primaryMetric").getString("scoreUnit", ""), change, regressed ? "  REGRESSION" : ""));
+		}
+
+		System.out.println(regressions + " regression(s) beyond " + threshold + "%");
+		if (regressions > 0) System.exit(1);
+	}
+
+	private static double score(JsonObject result) {
+		return result.getJsonObject("primaryMetric").getJsonNumber("score").doubleValue();
+	}
+
+	/** Reads a JMH result file into a map keyed by benchmark name plus its parameters */
+	private static Map<String, JsonObject> read(Path file) throws IOException {
+		Map<String, JsonObject> results = new LinkedHashMap<>();
+		try (Reader reader = Files.newBufferedReader(file); JsonReader json = Json.createReader(reader)) {
+			JsonArray array = json.readArray();
+			for (JsonValue value : array) {
+				JsonObject result = value.asJsonObject();
+				StringBuilder key = new StringBuilder(result.getString("benchmark"));
+				JsonObject params = result.getJsonObject("params");
+				if (params != null) {
+					Map<String, JsonValue> sorted = new TreeMap<>(params);
+					sorted.forEach((name, param) -> key.append(' ').append(name).append('=').append(((JsonString) param).getString()));
+				}
+				results.put(key.toString(), result);
+			}
+		}
+		return results;
+	}
+}
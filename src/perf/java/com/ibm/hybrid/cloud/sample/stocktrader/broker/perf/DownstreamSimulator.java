@@ -0,0 +1,342 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Account;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.CashAccount;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Stock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.json.JsonObject;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** Stands in for the Portfolio, Account, Cash Account and Trade History microservices, implementing the REST
+ *  contracts of the interfaces in the client package against in-memory data, so that the broker can be load tested
+ *  on its own.  Each service adds a random latency (log-normal, given its median and 99th percentile) before
+ *  responding, and fails a given fraction of requests with a 500.
+ *
+ *  Usage: DownstreamSimulator [key=value...], where the keys (and their defaults) are:
+ *    port=9081             the services are at /portfolio, /account, /cash-account and /trade-history
+ *    owners=1000           number of owners to pre-populate, named like PerfData.owner
+ *    stocks=10             number of holdings in each pre-populated portfolio
+ *    medianMillis=5        median latency added to each response
+ *    p99Millis=25          99th percentile latency added to each response
+ *    errorRate=0           fraction of requests failed with a 500
+ *  Any of the last three can be set for just one service by prefixing the key with its path, like account.errorRate=0.1
+ */
+public final class DownstreamSimulator {
+	private static final Jsonb jsonb = JsonbBuilder.create();
+	private static final String JSON = "application/json";
+	private static final double PRICE = 100.0;
+
+	private final Map<String, String> settings;
+	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+	private final NavigableMap<String, Portfolio> portfolios = new ConcurrentSkipListMap<>(); //by owner, in owner order
+	private final Map<String, Account> accounts = new ConcurrentHashMap<>(); //by id
+	private final Map<String, CashAccount> cashAccounts = new ConcurrentHashMap<>(); //by owner
+
+	/** What a service responds with, before the simulated latency is added */
+	private record Reply(int status, String contentType, String body) {
+		static Reply json(Object value) {
+			return (value != null) ? new Reply(200, JSON, jsonb.toJson(value)) : notFound();
+		}
+
+		static Reply notFound() {
+			return new Reply(404, "text/plain", "Not found");
+		}
+	}
+
+	@FunctionalInterface
+	private interface Service {
+		Reply handle(String method, List<String> path, Map<String, List<String>> query);
+	}
+
+	/** Log-normal latency, which (unlike a normal distribution) has the long right tail real services do */
+	private static final class Latency {
+		private final double mu;
+		private final double sigma;
+
+		Latency(double medianMillis, double p99Millis) {
+			mu = Math.log(Math.max(medianMillis, 0.001));
+			sigma = (p99Millis > medianMillis) ? Math.log(p99Millis / medianMillis) / 2.3263 : 0.0; //z of the 99th percentile
+		}
+
+		long sampleMicros() {
+			return (long) (Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()) * 1000.0);
+		}
+	}
+
+	private DownstreamSimulator(Map<String, String> settings) {
+		this.settings = settings;
+		int owners = Integer.parseInt(settings.getOrDefault("owners", "1000"));
+		int stocks = Integer.parseInt(settings.getOrDefault("stocks", "10"));
+		for (int index = 0; index < owners; index++) {
+			Portfolio portfolio = PerfData.portfolio(index, stocks);
+			portfolio.setTotal(total(portfolio));
+			portfolios.put(portfolio.getOwner(), portfolio);
+			Account account = PerfData.account(index);
+			accounts.put(account.getId(), account);
+			cashAccounts.put(portfolio.getOwner(), new CashAccount(portfolio.getOwner(), 100000.0, "USD"));
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> settings = new HashMap<>();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals < 1) {
+				System.err.println("Arguments must be of the form key=value, not "+arg);
+				System.exit(2);
+			}
+			settings.put(arg.substring(0, equals), arg.substring(equals + 1));
+		}
+		new DownstreamSimulator(settings).start();
+	}
+
+	private void start() throws IOException {
+		int port = Integer.parseInt(settings.getOrDefault("port", "9081"));
+		HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+		register(server, "portfolio", this::portfolio);
+		register(server, "account", this::account);
+		register(server, "cash-account", this::cashAccount);
+		register(server, "trade-history", this::tradeHistory);
+		server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+		server.start();
+		System.out.println("Simulating the downstream services of the broker at http://localhost:"+port+"/ with "
+			+portfolios.size()+" owners, and these settings: "+settings);
+	}
+
+	private void register(HttpServer server, String name, Service service) {
+		Latency latency = new Latency(setting(name, "medianMillis", 5), setting(name, "p99Millis", 25));
+		double errorRate = setting(name, "errorRate", 0);
+		String prefix = "/"+name;
+		server.createContext(prefix, exchange -> {
+			Reply reply;
+			try {
+				if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+					reply = new Reply(500, "text/plain", "Simulated failure");
+				} else {
+					URI uri = exchange.getRequestURI();
+					exchange.getRequestBody().readAllBytes(); //the request bodies aren't needed to simulate the responses
+					reply = service.handle(exchange.getRequestMethod(), path(uri.getRawPath().substring(prefix.length())), query(uri.getRawQuery()));
+				}
+			} catch (RuntimeException e) {
+				reply = new Reply(400, "text/plain", String.valueOf(e));
+			}
+			Reply response = reply;
+			scheduler.schedule(() -> send(exchange, response), latency.sampleMicros(), TimeUnit.MICROSECONDS);
+		});
+	}
+
+	private double setting(String service, String key, double defaultValue) {
+		String value = settings.getOrDefault(service+"."+key, settings.get(key));
+		return (value != null) ? Double.parseDouble(value) : defaultValue;
+	}
+
+	private static void send(HttpExchange exchange, Reply reply) {
+		try (exchange) {
+			byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", reply.contentType());
+			exchange.sendResponseHeaders(reply.status(), body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to respond: "+e);
+		}
+	}
+
+	private Reply portfolio(String method, List<String> path, Map<String, List<String>> query) {
+		if (path.isEmpty()) {
+			if (!method.equals("GET")) return Reply.notFound();
+			int page = Integer.parseInt(first(query, "page", "1"));
+			int pageSize = Integer.parseInt(first(query, "pageSize", "10"));
+			String after = first(query, "after", null);
+			NavigableMap<String, Portfolio> remaining = (after != null) ? portfolios.tailMap(after, false) : portfolios;
+			long skip = (after != null) ? 0 : (long) (page - 1) * pageSize;
+			List<Portfolio> result = new ArrayList<>(pageSize);
+			for (Portfolio portfolio : remaining.values()) {
+				if (skip-- > 0) continue;
+				if (result.size() == pageSize) break;
+				result.add(portfolio);
+			}
+			return json(result);
+		}
+
+		String owner = path.get(0);
+		switch (method) {
+			case "GET":
+				return json(portfolios.get(owner));
+			case "POST":
+				Portfolio created = new Portfolio(owner, 0.0, first(query, "accountID", null));
+				portfolios.put(owner, created);
+				return json(created);
+			case "PUT":
+				Portfolio portfolio = portfolios.get(owner);
+				if (portfolio == null) return Reply.notFound();
+				String symbol = first(query, "symbol", null);
+				int shares = Integer.parseInt(first(query, "shares", "0"));
+				double commission = Double.parseDouble(first(query, "commission", "0"));
+				synchronized (portfolio) {
+					JsonObject stocks = portfolio.getStocks();
+					int held = ((stocks != null) && stocks.containsKey(symbol)) ? stocks.getJsonObject(symbol).getInt("shares") : 0;
+					portfolio.addStock(new Stock(symbol, held + shares, commission, PRICE, (held + shares) * PRICE, "2026-10-18"));
+					portfolio.setLastTrade(shares * PRICE + commission);
+					portfolio.setTotal(total(portfolio));
+					return Reply.json(portfolio);
+				}
+			case "DELETE":
+				return json(portfolios.remove(owner));
+			default:
+				return Reply.notFound();
+		}
+	}
+
+	private Reply account(String method, List<String> path, Map<String, List<String>> query) {
+		if (path.isEmpty()) {
+			if (!method.equals("GET")) return Reply.notFound();
+			List<Account> result = new ArrayList<>();
+			for (String owners : query.getOrDefault("owners", List.of())) {
+				for (String owner : owners.split(",")) {
+					Portfolio portfolio = portfolios.get(owner);
+					Account account = (portfolio != null) ? accounts.get(portfolio.getAccountID()) : null;
+					if (account != null) result.add(account);
+				}
+			}
+			return json(result);
+		}
+		if ((path.size() > 1) && path.get(1).equals("feedback")) {
+			return new Reply(200, JSON, "{\"message\":\"Thanks for the feedback\",\"free\":1,\"sentiment\":\"Unknown\"}");
+		}
+
+		String id = path.get(0);
+		switch (method) {
+			case "GET":
+			case "PUT":
+				return json(accounts.get(id));
+			case "POST":
+				Account created = new Account(id, "Basic", 50.0, 0.0, 0, "Unknown", 9.99);
+				created.setId(id);
+				accounts.put(id, created);
+				return json(created);
+			case "DELETE":
+				return json(accounts.remove(id));
+			default:
+				return Reply.notFound();
+		}
+	}
+
+	private Reply cashAccount(String method, List<String> path, Map<String, List<String>> query) {
+		if (path.isEmpty()) return Reply.notFound();
+
+		String owner = path.get(0);
+		CashAccount cashAccount = cashAccounts.get(owner);
+		if (path.size() > 1) { //debit or credit
+			if (cashAccount == null) return Reply.notFound();
+			double amount = Double.parseDouble(first(query, "amount", "0"));
+			synchronized (cashAccount) {
+				cashAccount.setBalance(cashAccount.getBalance() + (path.get(1).equals("debit") ? -amount : amount));
+				return Reply.json(cashAccount);
+			}
+		}
+		switch (method) {
+			case "GET":
+			case "PUT":
+				return json(cashAccount);
+			case "POST":
+				CashAccount created = new CashAccount(owner, 100000.0, "USD");
+				cashAccounts.put(owner, created);
+				return json(created);
+			case "DELETE":
+				return json(cashAccounts.remove(owner));
+			default:
+				return Reply.notFound();
+		}
+	}
+
+	private Reply tradeHistory(String method, List<String> path, Map<String, List<String>> query) {
+		if ((path.size() < 2) || !path.get(0).equals("returns")) return Reply.notFound();
+		Random random = new Random(path.get(1).hashCode()); //the same owner always gets the same returns
+		return new Reply(200, "text/plain", String.format("%.2f", random.nextDouble() * 40.0 - 10.0));
+	}
+
+	/** Serializes under the object's lock, since PUTs update portfolios in place */
+	private static Reply json(Object value) {
+		if (value == null) return Reply.notFound();
+		synchronized (value) {
+			return Reply.json(value);
+		}
+	}
+
+	private static double total(Portfolio portfolio) {
+		double total = 0.0;
+		JsonObject stocks = portfolio.getStocks();
+		if (stocks != null) for (String symbol : stocks.keySet()) {
+			total += stocks.getJsonObject(symbol).getJsonNumber("total").doubleValue();
+		}
+		return total;
+	}
+
+	private static List<String> path(String rawPath) {
+		List<String> segments = new ArrayList<>();
+		for (String segment : rawPath.split("/")) {
+			if (!segment.isEmpty()) segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+		}
+		return segments;
+	}
+
+	/** Parses the query string, keeping repeated params (like the owners list sent to the Account service) */
+	private static Map<String, List<String>> query(String rawQuery) {
+		Map<String, List<String>> query = new HashMap<>();
+		if (rawQuery != null) for (String param : rawQuery.split("&")) {
+			int equals = param.indexOf('=');
+			String key = URLDecoder.decode((equals < 0) ? param : param.substring(0, equals), StandardCharsets.UTF_8);
+			String value = (equals < 0) ? "" : URLDecoder.decode(param.substring(equals + 1), StandardCharsets.UTF_8);
+			query.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+		}
+		return query;
+	}
+
+	private static String first(Map<String, List<String>> query, String key, String defaultValue) {
+		List<String> values = query.get(key);
+		return ((values != null) && !values.isEmpty()) ? values.get(0) : defaultValue;
+	}
+}
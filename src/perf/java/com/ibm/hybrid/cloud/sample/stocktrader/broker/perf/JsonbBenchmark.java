@@ -0,0 +1,105 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Account;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+
+import java.util.concurrent.TimeUnit;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JSON-B serialization and deserialization of the objects the broker sends and receives */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonbBenchmark {
+	@Param({"10", "100"})
+	public int stockCount;
+
+	private Jsonb jsonb;
+	private Broker broker;
+	private Portfolio portfolio;
+	private Account account;
+	private String brokerJSON;
+	private String portfolioJSON;
+	private String accountJSON;
+
+	@Setup
+	public void setup() {
+		jsonb = JsonbBuilder.create();
+		portfolio = PerfData.portfolio(1, stockCount);
+		account = PerfData.account(1);
+		broker = new Broker(portfolio, account);
+		brokerJSON = jsonb.toJson(broker);
+		portfolioJSON = jsonb.toJson(portfolio);
+		accountJSON = jsonb.toJson(account);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		jsonb.close();
+	}
+
+	@Benchmark
+	public String serializeBroker() {
+		return jsonb.toJson(broker);
+	}
+
+	@Benchmark
+	public String serializePortfolio() {
+		return jsonb.toJson(portfolio);
+	}
+
+	@Benchmark
+	public String serializeAccount() {
+		return jsonb.toJson(account);
+	}
+
+	@Benchmark
+	public Broker deserializeBroker() {
+		return jsonb.fromJson(brokerJSON, Broker.class);
+	}
+
+	@Benchmark
+	public Portfolio deserializePortfolio() {
+		return jsonb.fromJson(portfolioJSON, Portfolio.class);
+	}
+
+	@Benchmark
+	public Account deserializeAccount() {
+		return jsonb.fromJson(accountJSON, Account.class);
+	}
+}
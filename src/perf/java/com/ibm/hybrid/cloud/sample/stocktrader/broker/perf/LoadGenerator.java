@@ -0,0 +1,192 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/** Drives the broker's endpoints at a fixed rate, then reports the throughput achieved and the latency percentiles.
+ *  Requests are sent on schedule whether or not earlier ones have completed (an open-loop test), and each latency
+ *  is measured from when the request was due to be sent, so a stalled broker can't hide its stall by slowing the
+ *  test down (coordinated omission).
+ *
+ *  Usage: LoadGenerator [key=value...], where the keys (and their defaults) are:
+ *    url=http://localhost:9080/broker
+ *    rate=100               requests per second
+ *    seconds=30             how long to measure for
+ *    warmupSeconds=10       how long to send requests for beforehand, without measuring them
+ *    owners=1000            owners to pick from at random, named like PerfData.owner (as the DownstreamSimulator uses)
+ *    mix=getBroker:90,getBrokers:5,updateBroker:5   relative weights of the operations to send
+ *    authorization=         value of the Authorization header to send, such as "Bearer <jwt>"
+ *  The operations are getBroker, getBrokers, getBrokersBatch, getReturns and updateBroker.
+ */
+public final class LoadGenerator {
+	private static final String[] OPERATIONS = {"getBroker", "getBrokers", "getBrokersBatch", "getReturns", "updateBroker"};
+
+	private final String url;
+	private final int rate;
+	private final int owners;
+	private final String authorization;
+	private final int[] weights = new int[OPERATIONS.length];
+	private final int totalWeight;
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(10)).build();
+
+	private LoadGenerator(Map<String, String> settings) {
+		url = settings.getOrDefault("url", "http://localhost:9080/broker");
+		rate = Integer.parseInt(settings.getOrDefault("rate", "100"));
+		owners = Integer.parseInt(settings.getOrDefault("owners", "1000"));
+		authorization = settings.get("authorization");
+
+		int sum = 0;
+		for (String entry : settings.getOrDefault("mix", "getBroker:90,getBrokers:5,updateBroker:5").split(",")) {
+			String[] parts = entry.split(":");
+			int operation = Arrays.asList(OPERATIONS).indexOf(parts[0]);
+			if (operation < 0) throw new IllegalArgumentException("Unknown operation "+parts[0]);
+			weights[operation] = Integer.parseInt(parts[1]);
+			sum += weights[operation];
+		}
+		totalWeight = sum;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, String> settings = new HashMap<>();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals < 1) {
+				System.err.println("Arguments must be of the form key=value, not "+arg);
+				System.exit(2);
+			}
+			settings.put(arg.substring(0, equals), arg.substring(equals + 1));
+		}
+		LoadGenerator generator = new LoadGenerator(settings);
+		int warmupSeconds = Integer.parseInt(settings.getOrDefault("warmupSeconds", "10"));
+		int seconds = Integer.parseInt(settings.getOrDefault("seconds", "30"));
+
+		if (warmupSeconds > 0) {
+			System.out.println("Warming up for "+warmupSeconds+" s at "+generator.rate+" requests/s");
+			generator.run(warmupSeconds);
+		}
+		System.out.println("Measuring for "+seconds+" s at "+generator.rate+" requests/s");
+		generator.run(seconds).print(seconds);
+	}
+
+	/** The latencies (in nanoseconds) of one run, by outcome */
+	private static final class Results {
+		final AtomicLongArray latencies;
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+		long elapsedNanos;
+
+		Results(int requests) {
+			latencies = new AtomicLongArray(requests);
+		}
+
+		void print(int seconds) {
+			int count = completed.get();
+			long[] sorted = new long[count];
+			for (int index = 0; index < count; index++) sorted[index] = latencies.get(index);
+			Arrays.sort(sorted);
+
+			System.out.println(String.format("requests: %d, errors: %d, throughput: %.1f/s", count, errors.get(),
+				count / (elapsedNanos / 1e9)));
+			System.out.println(String.format("latency ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f", percentile(sorted, 50.0),
+				percentile(sorted, 99.0), percentile(sorted, 99.9), (count > 0) ? sorted[count - 1] / 1e6 : 0.0));
+		}
+
+		private static double percentile(long[] sorted, double percentile) {
+			if (sorted.length == 0) return 0.0;
+			int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+			return sorted[Math.max(index, 0)] / 1e6;
+		}
+	}
+
+	private Results run(int seconds) throws InterruptedException {
+		int requests = rate * seconds;
+		Results results = new Results(requests);
+		CountDownLatch done = new CountDownLatch(requests);
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		long start = System.nanoTime();
+
+		for (int index = 0; index < requests; index++) {
+			long due = start + index * intervalNanos;
+			long wait;
+			while ((wait = due - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+
+			client.sendAsync(request(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, t) -> {
+				long latency = System.nanoTime() - due;
+				if ((t != null) || (response.statusCode() >= 400)) results.errors.incrementAndGet();
+				results.latencies.set(results.completed.getAndIncrement(), latency);
+				done.countDown();
+			});
+		}
+		done.await();
+		results.elapsedNanos = System.nanoTime() - start;
+		return results;
+	}
+
+	private HttpRequest request() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String owner = PerfData.owner(random.nextInt(owners));
+		HttpRequest.Builder builder;
+		switch (pickOperation(random)) {
+			case "getBrokers":
+				builder = HttpRequest.newBuilder(URI.create(url+"/?page="+(1 + random.nextInt(Math.max(owners / 10, 1)))+"&pageSize=10")).GET();
+				break;
+			case "getBrokersBatch":
+				List<String> batch = new ArrayList<>(10);
+				for (int index = 0; index < 10; index++) batch.add(PerfData.owner(random.nextInt(owners)));
+				builder = HttpRequest.newBuilder(URI.create(url+"/batch?owners="+String.join(",", batch))).GET();
+				break;
+			case "getReturns":
+				builder = HttpRequest.newBuilder(URI.create(url+"/"+owner+"/returns")).GET();
+				break;
+			case "updateBroker":
+				String symbol = PerfData.symbol(random.nextInt(20));
+				int shares = random.nextBoolean() ? 1 : -1;
+				builder = HttpRequest.newBuilder(URI.create(url+"/"+owner+"?symbol="+symbol+"&shares="+shares))
+					.PUT(HttpRequest.BodyPublishers.noBody());
+				break;
+			default:
+				builder = HttpRequest.newBuilder(URI.create(url+"/"+owner)).GET();
+		}
+		if (authorization != null) builder.header("Authorization", authorization);
+		return builder.timeout(Duration.ofSeconds(30)).build();
+	}
+
+	private String pickOperation(ThreadLocalRandom random) {
+		int pick = random.nextInt(totalWeight);
+		for (int operation = 0; operation < OPERATIONS.length; operation++) {
+			pick -= weights[operation];
+			if (pick < 0) return OPERATIONS[operation];
+		}
+		return OPERATIONS[0];
+	}
+}
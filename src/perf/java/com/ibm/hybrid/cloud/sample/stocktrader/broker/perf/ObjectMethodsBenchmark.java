@@ -0,0 +1,99 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Account;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** equals, hashCode and toString of the JSON POJOs, on equal but distinct instances */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectMethodsBenchmark {
+	@Param({"10"})
+	public int stockCount;
+
+	private Portfolio portfolio;
+	private Portfolio samePortfolio;
+	private Account account;
+	private Broker broker;
+	private Broker sameBroker;
+	private List<Broker> page;
+
+	@Setup
+	public void setup() {
+		portfolio = PerfData.portfolio(1, stockCount);
+		samePortfolio = PerfData.portfolio(1, stockCount);
+		account = PerfData.account(1);
+		broker = new Broker(portfolio, account);
+		sameBroker = new Broker(samePortfolio, PerfData.account(1));
+		page = PerfData.portfolios(1000).stream().map(p -> new Broker(p, null)).toList();
+	}
+
+	@Benchmark
+	public boolean brokerEquals() {
+		return broker.equals(sameBroker);
+	}
+
+	@Benchmark
+	public int brokerHashCode() {
+		return broker.hashCode();
+	}
+
+	/** toString of a newly assembled broker, as happens for each broker of a page */
+	@Benchmark
+	public String brokerToString() {
+		return new Broker(portfolio, account).toString();
+	}
+
+	@Benchmark
+	public boolean portfolioEquals() {
+		return portfolio.equals(samePortfolio);
+	}
+
+	@Benchmark
+	public int portfolioHashCode() {
+		return portfolio.hashCode();
+	}
+
+	/** Adding a page of 1,000 brokers to a HashSet, like getBrokers used to */
+	@Benchmark
+	public Set<Broker> hashSetOfPage() {
+		return new HashSet<>(page);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.CborProvider;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.ws.rs.core.MediaType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Encoding and decoding a page of 1,000 brokers as JSON (via JSON-B, like the default JAX-RS provider does) versus
+ *  as CBOR (via the CborProvider).  The payload size of each is printed during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadBenchmark {
+	private static final int PAGE_SIZE = 1000;
+	private static final MediaType CBOR = new MediaType("application", "cbor");
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	@Param({"0", "10"})
+	public int stockCount;
+
+	private List<Broker> page;
+	private Type pageType;
+	private Jsonb jsonb;
+	private CborProvider cbor;
+	private byte[] json;
+	private byte[] binary;
+
+	@Setup
+	public void setup() throws Exception {
+		page = new ArrayList<>(PAGE_SIZE);
+		for (int index = 0; index < PAGE_SIZE; index++) {
+			page.add(new Broker(PerfData.portfolio(index, stockCount), PerfData.account(index)));
+		}
+		pageType = PayloadBenchmark.class.getDeclaredField("page").getGenericType();
+		jsonb = JsonbBuilder.create();
+		cbor = new CborProvider();
+
+		json = encodeJSON();
+		binary = encodeCBOR();
+		if (!decodeCBOR().equals(page)) throw new IllegalStateException("CBOR didn't round trip");
+		if (!decodeJSON().equals(page)) throw new IllegalStateException("JSON didn't round trip");
+		System.out.println("\n"+PAGE_SIZE+" brokers with "+stockCount+" stocks each: JSON "+json.length+" bytes, CBOR "
+			+binary.length+" bytes ("+(100 * binary.length / json.length)+"% of JSON)");
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		jsonb.close();
+	}
+
+	@Benchmark
+	public byte[] encodeJSON() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+		jsonb.toJson(page, pageType, output);
+		return output.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] encodeCBOR() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+		cbor.writeTo(page, List.class, pageType, NO_ANNOTATIONS, CBOR, null, output);
+		return output.toByteArray();
+	}
+
+	@Benchmark
+	public List<Broker> decodeJSON() {
+		return jsonb.fromJson(new ByteArrayInputStream(json), pageType);
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public List<Broker> decodeCBOR() throws IOException {
+		return (List<Broker>) cbor.readFrom(Object.class, pageType, NO_ANNOTATIONS, CBOR, null, new ByteArrayInputStream(binary));
+	}
+}
@@ -0,0 +1,91 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Account;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Stock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic test data for the benchmarks, shaped like what the downstream microservices return */
+public final class PerfData {
+	private static final String[] LOYALTY = {"Basic", "Bronze", "Silver", "Gold", "Platinum"};
+
+	private PerfData() {
+	}
+
+	public static String owner(int index) {
+		return String.format("Owner%07d", index);
+	}
+
+	public static String accountID(int index) {
+		return String.format("%08x-0000-4000-8000-%012x", index * 2654435761L & 0xffffffffL, index);
+	}
+
+	public static Portfolio portfolio(int index) {
+		return new Portfolio(owner(index), 1000.0 + index * 3.25, accountID(index));
+	}
+
+	/** A portfolio holding the specified number of different stocks */
+	public static Portfolio portfolio(int index, int stockCount) {
+		Portfolio portfolio = portfolio(index);
+		portfolio.addStocks(stocks(stockCount));
+		return portfolio;
+	}
+
+	public static List<Stock> stocks(int count) {
+		List<Stock> stocks = new ArrayList<>(count);
+		for (int index = 0; index < count; index++) stocks.add(stock(index));
+		return stocks;
+	}
+
+	public static Stock stock(int index) {
+		return new Stock(symbol(index), 10 + index % 90, 9.99, 100.0 + index * 0.37, (10 + index % 90) * (100.0 + index * 0.37), "2026-10-16");
+	}
+
+	public static String symbol(int index) {
+		return "S" + Integer.toString(index, 36).toUpperCase();
+	}
+
+	public static Account account(int index) {
+		Account account = new Account(owner(index), LOYALTY[index % LOYALTY.length], 50.0, 9.99 * (index % 20),
+				index % 3, "Unknown", 9.99);
+		account.setId(accountID(index));
+		return account;
+	}
+
+	/** A page of portfolios, in owner order like the Portfolio microservice returns them */
+	public static List<Portfolio> portfolios(int count) {
+		List<Portfolio> portfolios = new ArrayList<>(count);
+		for (int index = 0; index < count; index++) portfolios.add(portfolio(index));
+		return portfolios;
+	}
+
+	/** Accounts for nine out of ten of the portfolios, in no particular order */
+	public static List<Account> accounts(int count) {
+		List<Account> accounts = new ArrayList<>(count);
+		for (int index = 0; index < count; index++) {
+			if (index % 10 != 9) accounts.add(account(index));
+		}
+		Collections.shuffle(accounts, new Random(42));
+		return accounts;
+	}
+}
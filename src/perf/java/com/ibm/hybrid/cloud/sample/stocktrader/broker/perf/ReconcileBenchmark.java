@@ -0,0 +1,94 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker.perf;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.BrokerAssembler;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Account;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Broker;
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Matching a page of portfolios up with their accounts, as getBrokers does */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReconcileBenchmark {
+	@Param({"10", "1000", "100000"})
+	public int portfolioCount;
+
+	private List<Portfolio> portfolios;
+	private List<Account> accounts;
+
+	@Setup
+	public void setup() {
+		portfolios = PerfData.portfolios(portfolioCount);
+		accounts = PerfData.accounts(portfolioCount);
+	}
+
+	@Benchmark
+	public List<Broker> singlePassHashJoin() {
+		return BrokerAssembler.reconcile(portfolios, accounts);
+	}
+
+	/** The two-pass, parallel stream reconciliation that getBrokers used to do, kept as the baseline */
+	@Benchmark
+	public List<Broker> twoPassParallelStreams() {
+		Map<String, Account> mapOfAccounts = accounts
+				.stream()
+				.filter(a -> a.getId() !="null" || a.getId()!=null)
+				.collect(Collectors.toMap(Account::getId, account -> account));
+		Set<String> accountIds = accounts
+				.stream()
+				.map(Account::getId)
+				.collect(Collectors.toSet());
+
+		Set<Broker> brokersSet = portfolios.stream()
+				.parallel()
+				.filter(portfolio -> accountIds.contains(portfolio.getAccountID()))
+				.map(portfolio -> new Broker(portfolio, mapOfAccounts.get(portfolio.getAccountID())))
+				.collect(Collectors.toSet());
+
+		brokersSet.addAll(portfolios.stream()
+				.parallel()
+				.filter(Predicate.not(portfolio -> accountIds.contains(portfolio.getAccountID())))
+				.map(portfolio -> new Broker(portfolio, null))
+				.collect(Collectors.toSet()));
+
+		return brokersSet.stream().toList();
+	}
+}
@@ -0,0 +1,167 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutGetRemoveAcrossResizes() {
+        AccountIndex index = new AccountIndex(1000000);
+        for (int owner = 0; owner < 10000; owner++) index.put("owner"+owner, "account"+owner);
+        assertEquals(10000, index.size());
+        assertTrue(index.capacity() >= 10000 * 4 / 3);
+
+        for (int owner = 0; owner < 10000; owner += 2) index.remove("owner"+owner);
+        assertEquals(5000, index.size());
+        for (int owner = 0; owner < 10000; owner++) {
+            if ((owner % 2) == 0) {
+                assertNull(index.get("owner"+owner));
+            } else {
+                assertEquals("account"+owner, index.get("owner"+owner));
+            }
+        }
+
+        index.put("owner1", "changed");
+        assertEquals("changed", index.get("owner1"));
+        assertEquals(5000, index.size());
+        assertNull(index.get("unknown"));
+        assertNull(index.get(null));
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        AccountIndex index = new AccountIndex(1000000);
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int operation = 0; operation < 200000; operation++) {
+            String owner = "owner"+random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                index.remove(owner);
+                expected.remove(owner);
+            } else {
+                index.put(owner, "account"+operation);
+                expected.put(owner, "account"+operation);
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (int owner = 0; owner < 5000; owner++) {
+            assertEquals(expected.get("owner"+owner), index.get("owner"+owner));
+        }
+    }
+
+    @Test
+    public void testTombstonesAreReused() {
+        AccountIndex index = new AccountIndex(1000000);
+        for (int owner = 0; owner < 100000; owner++) {
+            index.put("owner"+owner, "account"+owner);
+            if (owner >= 5) index.remove("owner"+(owner - 5));
+        }
+        assertEquals(5, index.size());
+        assertEquals(16, index.capacity()); //rehashed in place rather than grown, since nearly all were tombstones
+        for (int owner = 99995; owner < 100000; owner++) assertEquals("account"+owner, index.get("owner"+owner));
+    }
+
+    @Test
+    public void testMaxSize() {
+        AccountIndex index = new AccountIndex(3);
+        for (int owner = 0; owner < 5; owner++) index.put("owner"+owner, "account"+owner);
+        assertEquals(3, index.size());
+        assertNull(index.get("owner3"));
+        assertNull(index.get("owner4"));
+
+        index.put("owner0", "changed"); //existing owners can still be updated
+        assertEquals("changed", index.get("owner0"));
+
+        index.remove("owner1");
+        index.put("owner4", "account4"); //and there's room again once one is removed
+        assertEquals("account4", index.get("owner4"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        AccountIndex index = new AccountIndex(1000000);
+        for (int owner = 0; owner < 1000; owner++) index.put("owner"+owner, "account"+owner);
+        index.remove("owner7");
+        Path snapshot = folder.getRoot().toPath().resolve("accounts.snapshot");
+        index.save(snapshot);
+        assertTrue(Files.notExists(snapshot.resolveSibling("accounts.snapshot.tmp")));
+
+        AccountIndex loaded = new AccountIndex(1000000);
+        assertEquals(999, loaded.load(snapshot));
+        assertEquals(999, loaded.size());
+        assertNull(loaded.get("owner7"));
+        for (int owner = 0; owner < 1000; owner++) {
+            if (owner != 7) assertEquals("account"+owner, loaded.get("owner"+owner));
+        }
+    }
+
+    @Test
+    public void testLoadMissingSnapshot() throws IOException {
+        AccountIndex index = new AccountIndex(1000000);
+        assertEquals(0, index.load(folder.getRoot().toPath().resolve("missing.snapshot")));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testLoadCorruptSnapshot() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("accounts.snapshot");
+        Files.write(snapshot, "not a snapshot".getBytes());
+        try {
+            new AccountIndex(1000000).load(snapshot);
+            fail("Loaded a file that isn't a snapshot");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testLoadTruncatedSnapshot() throws IOException {
+        AccountIndex index = new AccountIndex(1000000);
+        for (int owner = 0; owner < 100; owner++) index.put("owner"+owner, "account"+owner);
+        Path snapshot = folder.getRoot().toPath().resolve("accounts.snapshot");
+        index.save(snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length / 2));
+        try {
+            new AccountIndex(1000000).load(snapshot);
+            fail("Loaded a truncated snapshot");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+public class ExceptionLoggerTest {
+
+    @Test
+    public void testShutdownStopsTheWriter() {
+        List<String> messages = new CopyOnWriteArrayList<>();
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.WARNING);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        ExceptionLogger exceptionLogger = new ExceptionLogger(logger, 10, 60000);
+        for (int index = 0; index < 3; index++) exceptionLogger.log(new IllegalStateException("down"));
+        exceptionLogger.shutdown();
+
+        //what was queued is logged, along with the count of repeats, before the writer stops
+        assertEquals(List.of("java.lang.IllegalStateException: down",
+            "java.lang.IllegalStateException: down occurred 2 more times in the last 60 seconds"), messages);
+        assertFalse(writerRunning());
+
+        //and anything logged afterwards is written directly, without starting it again
+        exceptionLogger.log(new IllegalArgumentException("late"));
+        assertTrue(messages.contains("java.lang.IllegalArgumentException: late"));
+        assertFalse(writerRunning());
+    }
+
+    private static boolean writerRunning() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("broker-exception-logger") && thread.isAlive()) return true;
+        }
+        return false;
+    }
+}
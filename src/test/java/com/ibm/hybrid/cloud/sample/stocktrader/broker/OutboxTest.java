@@ -0,0 +1,251 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import jakarta.ws.rs.WebApplicationException;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutboxTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Outbox> opened = new ArrayList<>();
+
+    @Test
+    public void testReplayAfterUncleanStop() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Outbox unavailable = open(directory, 1024 * 1024, OutboxTest::refuse);
+        for (int index = 0; index < 3; index++) {
+            unavailable.enqueue("token", List.of(accountUpdate("owner", index)));
+        }
+
+        //reopen without closing the first outbox, as after a crash
+        List<Outbox.Entry> delivered = new CopyOnWriteArrayList<>();
+        Outbox outbox = open(directory, 1024 * 1024, (entry, authorization) -> delivered.add(entry));
+        assertEquals(3, outbox.pending());
+        outbox.enqueue("token", List.of(accountUpdate("owner", 3))); //replayed entries wait for a trade of their owner
+        awaitDelivered(outbox);
+        assertEquals(List.of(0.0, 1.0, 2.0, 3.0), totals(delivered));
+        close();
+    }
+
+    @Test
+    public void testReplayedEntriesOnlyUseTheirOwnersToken() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Outbox unavailable = open(directory, 1024 * 1024, OutboxTest::refuse);
+        unavailable.enqueue("alice's token", List.of(accountUpdate("alice", 1)));
+
+        List<String> sent = new CopyOnWriteArrayList<>();
+        Outbox outbox = open(directory, 1024 * 1024, (entry, authorization) -> sent.add(entry.owner+" with "+authorization));
+        outbox.enqueue("bob's token", List.of(accountUpdate("bob", 2)));
+        awaitTrue(() -> outbox.pending() == 1);
+        assertEquals(List.of("bob with bob's token"), sent);
+
+        outbox.enqueue("alice's new token", List.of(accountUpdate("alice", 3)));
+        awaitDelivered(outbox);
+        assertEquals(List.of("bob with bob's token", "alice with alice's new token", "alice with alice's new token"), sent);
+        close();
+    }
+
+    @Test
+    public void testRejectedTokenWaitsForTheOwnersNextTrade() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<String> sent = new CopyOnWriteArrayList<>();
+        Outbox outbox = open(directory, 1024 * 1024, (entry, authorization) -> {
+            if (authorization.equals("expired")) throw new WebApplicationException(401);
+            sent.add(entry.owner+" "+entry.amount+" with "+authorization);
+        });
+        outbox.enqueue("expired", List.of(accountUpdate("alice", 1)));
+        outbox.enqueue("bob's token", List.of(accountUpdate("bob", 2)));
+        awaitTrue(() -> outbox.pending() == 1);
+        assertEquals(List.of("bob 2.0 with bob's token"), sent);
+
+        outbox.enqueue("alice's token", List.of(accountUpdate("alice", 3)));
+        awaitDelivered(outbox);
+        assertEquals(List.of("bob 2.0 with bob's token", "alice 1.0 with alice's token", "alice 3.0 with alice's token"), sent);
+        close();
+    }
+
+    @Test
+    public void testAttemptedDebitIsNotReplayed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CountDownLatch attempted = new CountDownLatch(1);
+        Outbox unavailable = open(directory, 1024 * 1024, (entry, authorization) -> {
+            attempted.countDown();
+            refuse(entry, authorization);
+        });
+        unavailable.enqueue("token", List.of(new Outbox.Entry(Outbox.CASH_DEBIT, "owner", null, 9.99)));
+        assertTrue(attempted.await(10, TimeUnit.SECONDS));
+
+        List<Outbox.Entry> delivered = new CopyOnWriteArrayList<>();
+        Outbox outbox = open(directory, 1024 * 1024, (entry, authorization) -> delivered.add(entry));
+        assertEquals(0, outbox.pending());
+        Thread.sleep(200);
+        assertTrue(delivered.isEmpty());
+        close();
+    }
+
+    @Test
+    public void testCorruptLastRecord() throws Exception {
+        testDamagedLastRecord(false);
+    }
+
+    @Test
+    public void testPartialLastRecord() throws Exception {
+        testDamagedLastRecord(true);
+    }
+
+    @Test
+    public void testSegmentRollAndDeletion() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<Outbox.Entry> delivered = new CopyOnWriteArrayList<>();
+        Outbox outbox = open(directory, 4096, (entry, authorization) -> delivered.add(entry));
+        for (int index = 0; index < 500; index++) {
+            outbox.enqueue("token", List.of(accountUpdate("owner"+index, index)));
+        }
+        awaitDelivered(outbox);
+
+        List<Double> expected = new ArrayList<>();
+        for (int index = 0; index < 500; index++) expected.add((double) index);
+        assertEquals(expected, totals(delivered));
+
+        awaitTrue(() -> segments(directory).size() == 1);
+        assertFalse("Should have rolled", segments(directory).contains(directory.resolve("outbox-0.log")));
+        close();
+    }
+
+    /** Damages the second of two records, as a crash part way through writing it could, so only the first replays */
+    private void testDamagedLastRecord(boolean partial) throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Outbox unavailable = open(directory, 1024 * 1024, OutboxTest::refuse);
+        unavailable.enqueue("token", List.of(accountUpdate("owner", 1)));
+        unavailable.enqueue("token", List.of(accountUpdate("owner", 2)));
+        close();
+
+        List<Path> segments = segments(directory);
+        assertEquals(1, segments.size());
+        try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            int second = 8 + length.getInt(0); //the first record's header and body
+            length.clear();
+            channel.read(length, second);
+            if (partial) { //the header, but not the body, made it to disk
+                channel.write(ByteBuffer.allocate(length.getInt(0)), second + 8);
+            } else {
+                ByteBuffer octet = ByteBuffer.allocate(1);
+                channel.read(octet, second + 12);
+                octet.put(0, (byte) ~octet.get(0));
+                channel.write(octet.rewind(), second + 12);
+            }
+        }
+
+        List<Outbox.Entry> delivered = new CopyOnWriteArrayList<>();
+        Outbox outbox = open(directory, 1024 * 1024, (entry, authorization) -> delivered.add(entry));
+        assertEquals(1, outbox.pending());
+        outbox.enqueue("token", List.of(accountUpdate("owner", 3)));
+        awaitDelivered(outbox);
+        assertEquals(List.of(1.0, 3.0), totals(delivered));
+        close();
+    }
+
+    private Outbox open(Path directory, int segmentBytes, Outbox.Delivery delivery) throws IOException {
+        Outbox outbox = new Outbox(directory, segmentBytes, 100, delivery, e -> {}, metrics());
+        opened.add(outbox);
+        return outbox;
+    }
+
+    private void close() {
+        for (Outbox outbox : opened) outbox.close();
+        opened.clear();
+    }
+
+    private static Outbox.Entry accountUpdate(String owner, double total) {
+        return new Outbox.Entry(Outbox.ACCOUNT_UPDATE, owner, "account-"+owner, total);
+    }
+
+    private static void refuse(Outbox.Entry entry, String authorization) {
+        throw new RuntimeException(new ConnectException("Connection refused"));
+    }
+
+    private static List<Double> totals(List<Outbox.Entry> entries) {
+        List<Double> totals = new ArrayList<>();
+        for (Outbox.Entry entry : entries) totals.add(entry.amount);
+        return totals;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(path -> path.getFileName().toString().endsWith(".log")).forEach(segments::add);
+            Collections.sort(segments);
+            return segments;
+        }
+    }
+
+    private static void awaitDelivered(Outbox outbox) throws Exception {
+        awaitTrue(() -> outbox.pending() == 0);
+    }
+
+    private static void awaitTrue(Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.test()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean test() throws IOException;
+    }
+
+    /** A registry whose metrics do nothing */
+    static MetricRegistry metrics() {
+        ClassLoader loader = OutboxTest.class.getClassLoader();
+        Counter counter = (Counter) Proxy.newProxyInstance(loader, new Class<?>[] {Counter.class},
+            (proxy, method, args) -> (method.getReturnType() == long.class) ? 0L : null);
+        return (MetricRegistry) Proxy.newProxyInstance(loader, new Class<?>[] {MetricRegistry.class},
+            (proxy, method, args) -> method.getName().equals("counter") ? counter : null);
+    }
+}
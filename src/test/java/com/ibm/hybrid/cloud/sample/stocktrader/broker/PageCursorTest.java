@@ -0,0 +1,75 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.ibm.hybrid.cloud.sample.stocktrader.broker.json.Portfolio;
+
+import java.util.List;
+
+import jakarta.ws.rs.WebApplicationException;
+
+import org.junit.Test;
+
+public class PageCursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        for (String owner : List.of("John", "a:b", "ünïcödé", "owner/with+slashes?")) {
+            assertEquals(owner, PageCursor.decode(new PageCursor(owner).encode()).after);
+        }
+    }
+
+    @Test
+    public void testEncodingIsUrlSafe() {
+        String encoded = new PageCursor("??>>??>>").encode();
+        assertFalse(encoded, encoded.contains("+") || encoded.contains("/") || encoded.contains("="));
+    }
+
+    @Test
+    public void testMalformedCursorIsBadRequest() {
+        for (String cursor : List.of("!!!", "", "a")) { //not base64, no owner, not a whole byte
+            try {
+                PageCursor.decode(cursor);
+                fail("Decoded "+cursor);
+            } catch (WebApplicationException e) {
+                assertEquals(400, e.getResponse().getStatus());
+            }
+        }
+    }
+
+    @Test
+    public void testNext() {
+        List<Portfolio> page = List.of(new Portfolio("Alice"), new Portfolio("Bob"));
+        assertEquals("Bob", PageCursor.next(2, page).after);
+
+        assertNull(PageCursor.next(3, page)); //a short page is the last one
+        assertNull(PageCursor.next(2, List.of()));
+        assertNull(PageCursor.next(2, null));
+    }
+
+    @Test
+    public void testNextFollowsTheReturnedOrder() {
+        //such as from a case-insensitive collation, which String.compareTo would sort the other way around
+        List<Portfolio> page = List.of(new Portfolio("bob"), new Portfolio("Carl"));
+        assertEquals("Carl", PageCursor.next(2, page).after);
+    }
+}
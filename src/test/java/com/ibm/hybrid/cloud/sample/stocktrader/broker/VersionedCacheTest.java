@@ -0,0 +1,50 @@
+/*
+       Copyright 2026 Kyndryl, All Rights Reserved
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.ibm.hybrid.cloud.sample.stocktrader.broker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VersionedCacheTest {
+
+    @Test
+    public void testWriteRejectsOnlyItsOwnersFill() {
+        VersionedCache<String> cache = new VersionedCache<>("test", 10, 60000, OutboxTest.metrics());
+        long alice = cache.version("alice");
+        long bob = cache.version("bob");
+
+        cache.invalidate("bob"); //a write for bob while both loads are in flight
+        assertTrue(cache.putIfCurrent("alice", "alice's broker", alice));
+        assertFalse(cache.putIfCurrent("bob", "bob's stale broker", bob));
+
+        assertEquals("alice's broker", cache.get("alice"));
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    public void testEvictedOwnerDoesNotReuseAVersion() {
+        VersionedCache<String> cache = new VersionedCache<>("test", 1, 60000, OutboxTest.metrics());
+        long stale = cache.version("alice");
+        cache.version("bob"); //evicts alice
+        cache.invalidate("alice");
+        assertFalse(cache.putIfCurrent("alice", "alice's stale broker", stale));
+    }
+}